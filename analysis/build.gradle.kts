@@ -0,0 +1,42 @@
+plugins {
+    `java-library`
+}
+
+// Plain Java, so the analysis can be run, benchmarked and tested off-device
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
+
+tasks.withType<JavaCompile> {
+    options.encoding = "UTF-8"
+    options.compilerArgs.add("-Xlint:all")
+}
+
+// Compiles the formulary source into the asset the app maps at startup
+tasks.register<JavaExec>("compileFormulary") {
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.example.aiprescriptionreader.FormularyWriter")
+    args(
+        file("src/main/formulary/formulary.tsv").path,
+        file("../app/src/main/assets/formulary.rxf").path
+    )
+    inputs.file("src/main/formulary/formulary.tsv")
+    outputs.file("../app/src/main/assets/formulary.rxf")
+}
+
+// ./gradlew :analysis:analyzeCorpus -Pcorpus=<dir> [-PcorpusArgs="--threads 8 --min-accuracy 95"]
+tasks.register<JavaExec>("analyzeCorpus") {
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.example.aiprescriptionreader.CorpusRunner")
+    maxHeapSize = "2g"
+    val corpus = providers.gradleProperty("corpus")
+    val extra = providers.gradleProperty("corpusArgs")
+    argumentProviders.add(CommandLineArgumentProvider {
+        listOf(corpus.get()) + extra.getOrElse("").split(" ").filter { it.isNotBlank() }
+    })
+}
@@ -0,0 +1,77 @@
+package com.example.aiprescriptionreader;
+
+import java.util.List;
+
+/**
+ * Formats a {@link PrescriptionAnalysis} as the text shown on the result screen.
+ */
+public class AnalysisRenderer {
+
+    private static final String NOT_SPECIFIED = "Not specified";
+
+    public static String render(PrescriptionAnalysis analysis) {
+        StringBuilder result = new StringBuilder();
+
+        result.append(renderHeadline(analysis)).append("\n\n");
+        for (Medicine medicine : analysis.getMedicines()) {
+            result.append(renderMedicine(medicine)).append("\n");
+        }
+
+        result.append("📋 Summary:\n");
+        result.append(renderSummary(analysis));
+
+        return result.toString();
+    }
+
+    public static String renderHeadline(PrescriptionAnalysis analysis) {
+        if (!analysis.hasMedicines()) {
+            return "⚠️ No specific medicines detected.\nTry scanning a clearer prescription.";
+        }
+        return "✅ Found " + analysis.getMedicines().size() + " medicine(s):";
+    }
+
+    /**
+     * Dose, frequency and duration on their own lines, for a card that shows the name
+     * separately.
+     */
+    public static String renderMedicineDetails(Medicine medicine) {
+        return "Dose: " + orNotSpecified(medicine.getDosage())
+                + "\nFrequency: " + orNotSpecified(medicine.getFrequency())
+                + "\nDuration: " + orNotSpecified(medicine.getDuration());
+    }
+
+    public static String renderMedicine(Medicine medicine) {
+        return String.format("💊 %s\n   Dose: %s\n   Frequency: %s\n   Duration: %s\n",
+                medicine.getName(), orNotSpecified(medicine.getDosage()),
+                orNotSpecified(medicine.getFrequency()), orNotSpecified(medicine.getDuration()));
+    }
+
+    public static String renderSummary(PrescriptionAnalysis analysis) {
+        StringBuilder summary = new StringBuilder();
+        for (DosageForm form : analysis.getDosageForms()) {
+            summary.append("• ").append(form.getLabel()).append("\n");
+        }
+        if (summary.length() == 0) {
+            summary.append("• General prescription\n");
+        }
+        return summary.toString();
+    }
+
+    public static String renderInteractions(List<InteractionChecker.Interaction> interactions) {
+        if (interactions.isEmpty()) {
+            return "🟢 No known interactions between these medicines.\n";
+        }
+        StringBuilder result = new StringBuilder("⚠️ Interactions:\n");
+        for (InteractionChecker.Interaction interaction : interactions) {
+            result.append(interaction.severity == InteractionChecker.Severity.MAJOR ? "🔴 " : "🟠 ")
+                    .append(interaction.drugA).append(" + ").append(interaction.drugB)
+                    .append(interaction.withHistory ? " (history)" : "")
+                    .append("\n   ").append(interaction.description).append("\n");
+        }
+        return result.toString();
+    }
+
+    private static String orNotSpecified(String value) {
+        return value != null ? value : NOT_SPECIFIED;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.aiprescriptionreader;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Incremental analysis. Feed text line by line or block by block as OCR returns it;
+ * medicines are reported to the listener as soon as their line is complete.
+ *
+ * Spans are offsets into the concatenation of everything appended, with a newline
+ * between lines. Not thread-safe: feed a session from one thread.
+ */
+public class AnalysisSession {
+
+    public interface Listener {
+        void onMedicine(Medicine medicine);
+    }
+
+    private final Listener listener;
+    private final MedicineAnalyzer.DrugIndex drugIndex;
+    private final PrescriptionLexer lexer = new PrescriptionLexer("");
+    private final List<Medicine> medicines = new ArrayList<>();
+    private final Set<DosageForm> dosageForms = EnumSet.noneOf(DosageForm.class);
+    private final StringBuilder pending = new StringBuilder();
+    private int offset;
+    private boolean finished;
+
+    public AnalysisSession(Listener listener) {
+        this.listener = listener;
+        this.drugIndex = MedicineAnalyzer.currentDrugIndex();
+    }
+
+    /**
+     * Appends raw text. Complete lines are analyzed now; a trailing partial line waits
+     * for the next append or for {@link #finish()}.
+     */
+    public void append(CharSequence text) {
+        checkOpen();
+        int from = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) != '\n') continue;
+            if (pending.length() > 0) {
+                pending.append(text, from, i);
+                processLine(pending.toString());
+                pending.setLength(0);
+            } else {
+                processLine(text.subSequence(from, i).toString());
+            }
+            from = i + 1;
+        }
+        pending.append(text, from, text.length());
+    }
+
+    /**
+     * Appends one complete line (or OCR block), which must not contain a newline.
+     */
+    public void appendLine(String line) {
+        checkOpen();
+        flushPending();
+        processLine(line);
+    }
+
+    /**
+     * Appends a line the caller has already analyzed, so it is not analyzed again.
+     * The medicine, if any, has spans relative to the line.
+     */
+    void appendLine(String line, Medicine medicine) {
+        checkOpen();
+        flushPending();
+        addLine(line, medicine);
+    }
+
+    public List<Medicine> getMedicines() {
+        return new ArrayList<>(medicines);
+    }
+
+    /**
+     * Result so far, without consuming any pending partial line.
+     */
+    public PrescriptionAnalysis snapshot() {
+        return new PrescriptionAnalysis(new ArrayList<>(medicines), dosageForms, Math.max(0, offset - 1));
+    }
+
+    public PrescriptionAnalysis finish() {
+        if (!finished) {
+            // Trailing text without a newline is still a line
+            processLine(pending.toString());
+            pending.setLength(0);
+            finished = true;
+        }
+        return new PrescriptionAnalysis(medicines, dosageForms, Math.max(0, offset - 1));
+    }
+
+    private void flushPending() {
+        if (pending.length() > 0) {
+            processLine(pending.toString());
+            pending.setLength(0);
+        }
+    }
+
+    private void processLine(String line) {
+        addLine(line, MedicineAnalyzer.analyzeLine(drugIndex, lexer, line));
+    }
+
+    private void addLine(String line, Medicine medicine) {
+        MedicineAnalyzer.findDosageForms(line.toLowerCase(Locale.ROOT), dosageForms);
+        if (medicine != null) {
+            medicine = medicine.shift(offset);
+            medicines.add(medicine);
+            if (listener != null) listener.onMedicine(medicine);
+        }
+        offset += line.length() + 1;
+    }
+
+    private void checkOpen() {
+        if (finished) throw new IllegalStateException("Session already finished");
+    }
+}
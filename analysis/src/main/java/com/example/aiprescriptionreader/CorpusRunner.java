@@ -0,0 +1,346 @@
+package com.example.aiprescriptionreader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Headless runner over a corpus of OCR text dumps. Every *.txt file under the corpus
+ * directory is analyzed and compared with its golden file, the expected medicines as
+ * one tab-separated line each (name, dosage, frequency, duration; "-" when absent).
+ * The golden for a/b.txt is a/b.golden, under --golden when given, else next to it.
+ * <pre>
+ *   java CorpusRunner corpus/ [--golden dir] [--formulary file.rxf] [--threads n]
+ *                             [--write-golden] [--min-accuracy percent]
+ * </pre>
+ * Files are split across a fork-join pool and only per-file counts are kept, so
+ * memory stays flat however large the corpus is. Exits with 1 when any file could
+ * not be read or analyzed, or when --min-accuracy is given and file accuracy is below
+ * it or no file had a golden to compare with.
+ */
+public class CorpusRunner {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String TEXT_SUFFIX = ".txt";
+    private static final String GOLDEN_SUFFIX = ".golden";
+    // Files per fork-join leaf
+    private static final int LEAF_SIZE = 64;
+    private static final int MAX_REPORTED_MISMATCHES = 20;
+
+    private final File corpus;
+    private final File goldenDir;
+    private final boolean writeGolden;
+
+    CorpusRunner(File corpus, File goldenDir, boolean writeGolden) {
+        this.corpus = corpus;
+        this.goldenDir = goldenDir;
+        this.writeGolden = writeGolden;
+    }
+
+    public static void main(String[] args) throws Exception {
+        File corpus = null, golden = null, formulary = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean writeGolden = false;
+        double minAccuracy = -1;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--golden":
+                    golden = new File(args[++i]);
+                    break;
+                case "--formulary":
+                    formulary = new File(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--write-golden":
+                    writeGolden = true;
+                    break;
+                case "--min-accuracy":
+                    minAccuracy = Double.parseDouble(args[++i]);
+                    break;
+                default:
+                    corpus = new File(args[i]);
+            }
+        }
+        if (corpus == null || !corpus.isDirectory()) {
+            System.err.println("usage: CorpusRunner <corpus-dir> [--golden dir] [--formulary file.rxf]"
+                    + " [--threads n] [--write-golden] [--min-accuracy percent]");
+            System.exit(2);
+        }
+        if (formulary != null) {
+            MedicineAnalyzer.setFormulary(Formulary.open(formulary).names());
+        }
+
+        List<File> files = new ArrayList<>();
+        collect(corpus, files);
+        Collections.sort(files);
+
+        CorpusRunner runner = new CorpusRunner(corpus, golden, writeGolden);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        Tally tally = pool.invoke(runner.new Batch(files.toArray(new File[0]), 0, files.size()));
+        long elapsedNanos = System.nanoTime() - start;
+        pool.shutdown();
+
+        System.out.print(tally.report(elapsedNanos, threads));
+        String failure = tally.gateFailure(minAccuracy);
+        if (failure != null) {
+            System.err.println("FAILED: " + failure);
+            System.exit(1);
+        }
+    }
+
+    private static void collect(File dir, List<File> files) {
+        File[] children = dir.listFiles();
+        if (children == null) return;
+        for (File child : children) {
+            if (child.isDirectory()) collect(child, files);
+            else if (child.getName().endsWith(TEXT_SUFFIX)) files.add(child);
+        }
+    }
+
+    // Never serialized; ForkJoinTask is Serializable only by inheritance
+    @SuppressWarnings("serial")
+    private class Batch extends RecursiveTask<Tally> {
+        private final File[] files;
+        private final int from, to;
+
+        Batch(File[] files, int from, int to) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (to - from <= LEAF_SIZE) {
+                Tally tally = new Tally();
+                for (int i = from; i < to; i++) {
+                    process(files[i], tally);
+                }
+                return tally;
+            }
+            int mid = (from + to) >>> 1;
+            Batch left = new Batch(files, from, mid);
+            left.fork();
+            Tally right = new Batch(files, mid, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    void process(File file, Tally tally) {
+        tally.files++;
+        List<String> actual;
+        try {
+            String text = new String(readAll(file), UTF_8);
+            tally.characters += text.length();
+            actual = toRows(MedicineAnalyzer.analyze(text));
+        } catch (IOException | RuntimeException e) {
+            tally.errors++;
+            tally.addMismatch(relative(file) + ": " + e);
+            return;
+        }
+        tally.predicted += actual.size();
+
+        File golden = goldenFor(file);
+        try {
+            if (writeGolden) {
+                writeRows(golden, actual);
+                return;
+            }
+            if (!golden.isFile()) {
+                tally.missingGolden++;
+                return;
+            }
+            List<String> expected = readRows(golden);
+            tally.compared++;
+            tally.comparedPredicted += actual.size();
+            tally.expected += expected.size();
+            int matched = countMatched(expected, actual);
+            tally.matched += matched;
+            if (matched == expected.size() && matched == actual.size()) {
+                tally.exact++;
+            } else {
+                tally.addMismatch(relative(file) + ": expected " + expected + " but got " + actual);
+            }
+        } catch (IOException e) {
+            tally.errors++;
+            tally.addMismatch(relative(file) + ": " + e);
+        }
+    }
+
+    private File goldenFor(File text) {
+        String path = relative(text);
+        path = path.substring(0, path.length() - TEXT_SUFFIX.length()) + GOLDEN_SUFFIX;
+        return new File(goldenDir != null ? goldenDir : corpus, path);
+    }
+
+    private String relative(File file) {
+        String root = corpus.getPath();
+        String path = file.getPath();
+        return path.startsWith(root) ? path.substring(root.length() + 1) : path;
+    }
+
+    /**
+     * The medicines as golden rows, in the order they were found.
+     */
+    static List<String> toRows(PrescriptionAnalysis analysis) {
+        List<String> rows = new ArrayList<>();
+        for (Medicine medicine : analysis.getMedicines()) {
+            rows.add(field(medicine.getName()) + '\t' + field(medicine.getDosage()) + '\t'
+                    + field(medicine.getFrequency()) + '\t' + field(medicine.getDuration()));
+        }
+        return rows;
+    }
+
+    private static String field(String value) {
+        if (value == null || value.trim().isEmpty()) return "-";
+        return value.trim().replace('\t', ' ').toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Rows found in both, each expected row matching at most one actual row.
+     */
+    static int countMatched(List<String> expected, List<String> actual) {
+        Map<String, Integer> remaining = new HashMap<>();
+        for (String row : expected) {
+            Integer count = remaining.get(row);
+            remaining.put(row, count == null ? 1 : count + 1);
+        }
+        int matched = 0;
+        for (String row : actual) {
+            Integer count = remaining.get(row);
+            if (count != null && count > 0) {
+                remaining.put(row, count - 1);
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    private static List<String> readRows(File file) throws IOException {
+        List<String> rows = new ArrayList<>();
+        for (String line : new String(readAll(file), UTF_8).split("\n")) {
+            String row = line.trim();
+            if (row.isEmpty() || row.startsWith("#")) continue;
+            String[] fields = row.split("\t", -1);
+            StringBuilder normalized = new StringBuilder();
+            for (int i = 0; i < 4; i++) {
+                if (i > 0) normalized.append('\t');
+                normalized.append(field(i < fields.length ? fields[i] : null));
+            }
+            rows.add(normalized.toString());
+        }
+        return rows;
+    }
+
+    private static void writeRows(File file, List<String> rows) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String row : rows) sb.append(row).append('\n');
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(sb.toString().getBytes(UTF_8));
+        }
+    }
+
+    private static byte[] readAll(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(file.length(), 1 << 20));
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    static class Tally {
+        long files, characters, errors, missingGolden;
+        long compared, exact;
+        // Medicines: predicted over every file, and over compared files only
+        long predicted, comparedPredicted, expected, matched;
+        final List<String> mismatches = new ArrayList<>();
+
+        void addMismatch(String message) {
+            if (mismatches.size() < MAX_REPORTED_MISMATCHES) mismatches.add(message);
+        }
+
+        Tally merge(Tally other) {
+            files += other.files;
+            characters += other.characters;
+            errors += other.errors;
+            missingGolden += other.missingGolden;
+            compared += other.compared;
+            exact += other.exact;
+            predicted += other.predicted;
+            comparedPredicted += other.comparedPredicted;
+            expected += other.expected;
+            matched += other.matched;
+            for (String mismatch : other.mismatches) addMismatch(mismatch);
+            return this;
+        }
+
+        /**
+         * Why the run should fail, or null if it passes. A negative minAccuracy means
+         * no threshold was asked for.
+         */
+        String gateFailure(double minAccuracy) {
+            if (errors > 0) return errors + " files could not be analyzed";
+            if (minAccuracy < 0) return null;
+            if (compared == 0) return "no files had a golden to compare with";
+            if (fileAccuracy() < minAccuracy) {
+                return String.format(Locale.US, "accuracy %.2f%% is below %.2f%%", fileAccuracy(), minAccuracy);
+            }
+            return null;
+        }
+
+        double fileAccuracy() {
+            return percent(exact, compared);
+        }
+
+        String report(long elapsedNanos, int threads) {
+            double seconds = elapsedNanos / 1e9;
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.US, "Files:      %d in %.2fs on %d threads (%.1f files/s, %.1f MB/s)%n",
+                    files, seconds, threads, files / Math.max(seconds, 1e-9),
+                    characters / 1e6 / Math.max(seconds, 1e-9)));
+            sb.append(String.format(Locale.US, "Medicines:  %d found%n", predicted));
+            if (compared > 0) {
+                double precision = percent(matched, comparedPredicted);
+                double recall = percent(matched, expected);
+                double f1 = precision + recall > 0 ? 2 * precision * recall / (precision + recall) : 0;
+                sb.append(String.format(Locale.US, "Accuracy:   %.2f%% of %d files exact%n", fileAccuracy(), compared));
+                sb.append(String.format(Locale.US, "            precision %.2f%%, recall %.2f%%, F1 %.2f%%%n",
+                        precision, recall, f1));
+            }
+            if (missingGolden > 0) sb.append("No golden:  ").append(missingGolden).append(" files\n");
+            if (errors > 0) sb.append("Errors:     ").append(errors).append(" files\n");
+            for (String mismatch : mismatches) {
+                sb.append("  ").append(mismatch).append('\n');
+            }
+            return sb.toString();
+        }
+
+        private static double percent(long part, long whole) {
+            return whole > 0 ? 100.0 * part / whole : 0;
+        }
+    }
+}
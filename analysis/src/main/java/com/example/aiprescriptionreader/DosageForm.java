@@ -0,0 +1,19 @@
+package com.example.aiprescriptionreader;
+
+public enum DosageForm {
+    TABLET("Oral tablets"),
+    CAPSULE("Capsules"),
+    LIQUID("Liquid medicine"),
+    INJECTION("Injections"),
+    TOPICAL("Topical application");
+
+    private final String label;
+
+    DosageForm(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.aiprescriptionreader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick matcher over a drug list. Built once, then finds every
+ * drug occurrence in a single pass over the text, case-insensitively.
+ */
+public class DrugMatcher {
+
+    private final String[] names;
+
+    // Per-state sorted transition tables: keys[state][i] -> targets[state][i]
+    private final char[][] keys;
+    private final int[][] targets;
+    private final int[] fail;
+    // Pattern ending at this state, or -1
+    private final int[] output;
+    // Nearest state on the failure chain that has an output, or -1
+    private final int[] dictLink;
+
+    private DrugMatcher(String[] names, char[][] keys, int[][] targets,
+                        int[] fail, int[] output, int[] dictLink) {
+        this.names = names;
+        this.keys = keys;
+        this.targets = targets;
+        this.fail = fail;
+        this.output = output;
+        this.dictLink = dictLink;
+    }
+
+    public static DrugMatcher fromNames(Collection<String> drugNames) {
+        Set<String> unique = new LinkedHashSet<>();
+        for (String name : drugNames) {
+            if (name == null) continue;
+            String normalized = name.trim().toLowerCase(Locale.ROOT);
+            if (!normalized.isEmpty()) unique.add(normalized);
+        }
+        return build(unique.toArray(new String[0]));
+    }
+
+    public static DrugMatcher load(InputStream in) throws IOException {
+        return fromNames(readNames(in));
+    }
+
+    /**
+     * Reads one drug name per line. Blank lines and lines starting with '#' are skipped.
+     */
+    public static List<String> readNames(InputStream in) throws IOException {
+        List<String> drugNames = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, Charset.forName("UTF-8")));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            drugNames.add(line);
+        }
+        return drugNames;
+    }
+
+    private static DrugMatcher build(String[] names) {
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> outputs = new ArrayList<>();
+        trie.add(new TreeMap<Character, Integer>());
+        outputs.add(-1);
+
+        for (int p = 0; p < names.length; p++) {
+            String name = names[p];
+            int state = 0;
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                Integer next = trie.get(state).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<Character, Integer>());
+                    outputs.add(-1);
+                    trie.get(state).put(c, next);
+                }
+                state = next;
+            }
+            outputs.set(state, p);
+        }
+
+        int size = trie.size();
+        char[][] keys = new char[size][];
+        int[][] targets = new int[size][];
+        int[] output = new int[size];
+        for (int s = 0; s < size; s++) {
+            TreeMap<Character, Integer> children = trie.get(s);
+            keys[s] = new char[children.size()];
+            targets[s] = new int[children.size()];
+            int i = 0;
+            for (java.util.Map.Entry<Character, Integer> e : children.entrySet()) {
+                keys[s][i] = e.getKey();
+                targets[s][i] = e.getValue();
+                i++;
+            }
+            output[s] = outputs.get(s);
+        }
+
+        int[] fail = new int[size];
+        int[] dictLink = new int[size];
+        Arrays.fill(dictLink, -1);
+
+        // Breadth-first so every failure target is resolved before its dependents
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : targets[0]) {
+            fail[child] = 0;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int i = 0; i < keys[state].length; i++) {
+                char c = keys[state][i];
+                int child = targets[state][i];
+                int f = fail[state];
+                int next;
+                while ((next = step(keys, targets, f, c)) < 0 && f != 0) {
+                    f = fail[f];
+                }
+                fail[child] = next < 0 ? 0 : next;
+                int link = fail[child];
+                dictLink[child] = output[link] >= 0 ? link : dictLink[link];
+                queue.add(child);
+            }
+        }
+
+        return new DrugMatcher(names, keys, targets, fail, output, dictLink);
+    }
+
+    private static int step(char[][] keys, int[][] targets, int state, char c) {
+        int idx = Arrays.binarySearch(keys[state], c);
+        return idx >= 0 ? targets[state][idx] : -1;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * Returns every drug occurrence in the text, ordered by end position.
+     * Overlapping occurrences are all reported.
+     */
+    public List<Match> findAll(CharSequence text) {
+        List<Match> matches = new ArrayList<>();
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next;
+            while ((next = step(keys, targets, state, c)) < 0 && state != 0) {
+                state = fail[state];
+            }
+            state = next < 0 ? 0 : next;
+
+            int s = output[state] >= 0 ? state : dictLink[state];
+            while (s >= 0) {
+                int pattern = output[s];
+                int end = i + 1;
+                matches.add(new Match(pattern, names[pattern], end - names[pattern].length(), end));
+                s = dictLink[s];
+            }
+        }
+        return matches;
+    }
+
+    public static class Match {
+        public final int drugIndex;
+        public final String drug;
+        public final int start, end;
+        public final float score;
+
+        Match(int drugIndex, String drug, int start, int end) {
+            this(drugIndex, drug, start, end, 1f);
+        }
+
+        Match(int drugIndex, String drug, int start, int end, float score) {
+            this.drugIndex = drugIndex;
+            this.drug = drug;
+            this.start = start;
+            this.end = end;
+            this.score = score;
+        }
+
+        @Override
+        public String toString() {
+            return drug + "[" + start + "," + end + ")";
+        }
+    }
+}
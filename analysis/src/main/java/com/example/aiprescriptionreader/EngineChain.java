@@ -0,0 +1,143 @@
+package com.example.aiprescriptionreader;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs recognition engines in order, cheapest first, within a per-request latency
+ * budget. The first engine whose expected latency fits the budget runs; when its
+ * result looks weak and the time left still fits the next engine, that one runs too.
+ * The most confident result wins. An engine is skipped when its pass has already
+ * run on the page, since it would only repeat the same recognition. Expected
+ * latencies start from the configured values and follow what each engine actually
+ * takes.
+ */
+public class EngineChain {
+
+    // Weight of the newest sample in the latency estimate
+    private static final double LATENCY_SMOOTHING = 0.2;
+
+    public static class Result {
+        public final RecognizedText text;
+        public final String engine;
+        public final int confidence;
+        public final int attempts;
+        public final long elapsedMs;
+
+        Result(RecognizedText text, String engine, int confidence, int attempts, long elapsedMs) {
+            this.text = text;
+            this.engine = engine;
+            this.confidence = confidence;
+            this.attempts = attempts;
+            this.elapsedMs = elapsedMs;
+        }
+
+        @Override
+        public String toString() {
+            return engine + " " + confidence + "% after " + attempts + " attempt(s), " + elapsedMs + "ms";
+        }
+    }
+
+    private final RecognitionEngine[] engines;
+    private final double[] expectedMs;
+    private final int escalateBelow;
+
+    private EngineChain(RecognitionEngine[] engines, double[] expectedMs, int escalateBelow) {
+        this.engines = engines;
+        this.expectedMs = expectedMs;
+        this.escalateBelow = escalateBelow;
+    }
+
+    /**
+     * Recognizes the page within budgetMs where the estimates allow. If no engine is
+     * expected to fit, the fastest one runs anyway.
+     */
+    public Result recognize(RecognitionEngine.Page page, long budgetMs) throws Exception {
+        long start = System.nanoTime();
+        Set<String> passes = new HashSet<>();
+        int first = firstFitting(0, budgetMs, passes);
+        if (first < 0) first = fastest();
+
+        RecognizedText bestText = null;
+        String bestEngine = null;
+        int bestConfidence = -1;
+        int attempts = 0;
+        for (int i = first; i >= 0; ) {
+            long engineStart = System.nanoTime();
+            RecognizedText text = engines[i].recognize(page);
+            observe(i, (System.nanoTime() - engineStart) / 1_000_000);
+            attempts++;
+            passes.add(engines[i].pass());
+            if (text.getPass() != null) passes.add(text.getPass());
+
+            int confidence = text.getText().trim().isEmpty() ? 0 : RecognitionQuality.confidencePercent(text);
+            if (confidence > bestConfidence) {
+                bestText = text;
+                bestEngine = engines[i].name();
+                bestConfidence = confidence;
+            }
+            if (bestConfidence >= escalateBelow) break;
+            i = firstFitting(i + 1, budgetMs - (System.nanoTime() - start) / 1_000_000, passes);
+        }
+        return new Result(bestText, bestEngine, bestConfidence, attempts, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public synchronized long expectedMs(int index) {
+        return Math.round(expectedMs[index]);
+    }
+
+    public int size() {
+        return engines.length;
+    }
+
+    private synchronized int firstFitting(int from, long remainingMs, Set<String> passesRun) {
+        for (int i = from; i < engines.length; i++) {
+            if (expectedMs[i] <= remainingMs && !passesRun.contains(engines[i].pass())) return i;
+        }
+        return -1;
+    }
+
+    private synchronized int fastest() {
+        int fastest = 0;
+        for (int i = 1; i < engines.length; i++) {
+            if (expectedMs[i] < expectedMs[fastest]) fastest = i;
+        }
+        return fastest;
+    }
+
+    private synchronized void observe(int index, long ms) {
+        expectedMs[index] += LATENCY_SMOOTHING * (ms - expectedMs[index]);
+    }
+
+    public static class Builder {
+        private final List<RecognitionEngine> engines = new ArrayList<>();
+        private final List<Long> expected = new ArrayList<>();
+        private int escalateBelow = 70;
+
+        /**
+         * Adds the next engine to try, with its expected latency per page.
+         */
+        public Builder add(RecognitionEngine engine, long expectedMs) {
+            engines.add(engine);
+            expected.add(expectedMs);
+            return this;
+        }
+
+        /**
+         * Confidence percent under which a result counts as weak.
+         */
+        public Builder escalateBelow(int confidencePercent) {
+            escalateBelow = confidencePercent;
+            return this;
+        }
+
+        public EngineChain build() {
+            if (engines.isEmpty()) throw new IllegalStateException("No recognition engines");
+            double[] expectedMs = new double[expected.size()];
+            for (int i = 0; i < expectedMs.length; i++) expectedMs[i] = expected.get(i);
+            return new EngineChain(engines.toArray(new RecognitionEngine[0]), expectedMs, escalateBelow);
+        }
+    }
+}
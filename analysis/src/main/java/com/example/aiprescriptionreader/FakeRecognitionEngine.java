@@ -0,0 +1,178 @@
+package com.example.aiprescriptionreader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Deterministic in-process engine for tests and benchmarks on a plain JVM. Replays
+ * recorded outputs by page key; a page without a recording gets one of the recordings
+ * chosen by its key, so the same page always gets the same text. Latency is simulated
+ * as a fixed cost plus a cost per megapixel.
+ *
+ * Recordings are text, one page after another:
+ * <pre>
+ *   page &lt;key&gt;
+ *   &lt;left&gt; &lt;top&gt; &lt;right&gt; &lt;bottom&gt; &lt;confidence&gt; &lt;text&gt;   (tab-separated)
+ * </pre>
+ */
+public class FakeRecognitionEngine implements RecognitionEngine {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    // Synthesized layout for plain text: pixels per character and per line
+    private static final int CHAR_WIDTH = 14;
+    private static final int LINE_PITCH = 36;
+    private static final int LINE_HEIGHT = 28;
+    private static final int MARGIN = 40;
+
+    private final String name;
+    private final Map<String, RecognizedText> recordings = new ConcurrentHashMap<>();
+    private final List<String> keys = Collections.synchronizedList(new ArrayList<String>());
+    private final AtomicInteger calls = new AtomicInteger();
+    private volatile long fixedMs;
+    private volatile double msPerMegapixel;
+
+    public FakeRecognitionEngine(String name) {
+        this.name = name;
+    }
+
+    public FakeRecognitionEngine withLatency(long fixedMs, double msPerMegapixel) {
+        this.fixedMs = fixedMs;
+        this.msPerMegapixel = msPerMegapixel;
+        return this;
+    }
+
+    public FakeRecognitionEngine record(String key, RecognizedText text) {
+        if (recordings.put(key, text) == null) keys.add(key);
+        return this;
+    }
+
+    /**
+     * Records plain text, one recognized line per text line, laid out top to bottom
+     * with every element at the given confidence.
+     */
+    public FakeRecognitionEngine recordText(String key, String text, float confidence) {
+        return record(key, fromPlainText(text, confidence));
+    }
+
+    /**
+     * Adds every page of a recording.
+     */
+    public FakeRecognitionEngine load(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF_8));
+        String key = null;
+        List<RecognizedText.Line> lines = new ArrayList<>();
+        String row;
+        int lineNumber = 0;
+        while ((row = reader.readLine()) != null) {
+            lineNumber++;
+            if (row.trim().isEmpty() || row.startsWith("#")) continue;
+            if (row.startsWith("page ")) {
+                if (key != null) record(key, join(lines));
+                key = row.substring(5).trim();
+                lines = new ArrayList<>();
+                continue;
+            }
+            String[] fields = row.split("\t", 6);
+            if (key == null || fields.length != 6) {
+                throw new IOException("Line " + lineNumber + ": expected a page header or a line of 6 fields");
+            }
+            try {
+                lines.add(line(fields[5], lines.size(), Integer.parseInt(fields[0]), Integer.parseInt(fields[1]),
+                        Integer.parseInt(fields[2]), Integer.parseInt(fields[3]), Float.parseFloat(fields[4])));
+            } catch (NumberFormatException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        if (key != null) record(key, join(lines));
+        return this;
+    }
+
+    /**
+     * One page in the recording format, e.g. to capture a real engine's output.
+     */
+    public static String toRecording(String key, RecognizedText text) {
+        StringBuilder sb = new StringBuilder("page ").append(key).append('\n');
+        for (RecognizedText.Line line : text.getLines()) {
+            sb.append(line.left).append('\t').append(line.top).append('\t')
+                    .append(line.right).append('\t').append(line.bottom).append('\t')
+                    .append(String.format(Locale.US, "%.3f", line.confidence)).append('\t')
+                    .append(line.text.replace('\n', ' ')).append('\n');
+        }
+        return sb.toString();
+    }
+
+    public int calls() {
+        return calls.get();
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public RecognizedText recognize(Page page) throws InterruptedException {
+        calls.incrementAndGet();
+        long latencyMs = fixedMs + Math.round(msPerMegapixel * page.width() * (double) page.height() / 1e6);
+        if (latencyMs > 0) Thread.sleep(latencyMs);
+
+        RecognizedText text = recordings.get(page.key());
+        if (text != null) return text;
+        synchronized (keys) {
+            if (keys.isEmpty()) return new RecognizedText("", Collections.<RecognizedText.Line>emptyList());
+            return recordings.get(keys.get((page.key().hashCode() & 0x7fffffff) % keys.size()));
+        }
+    }
+
+    static RecognizedText fromPlainText(String text, float confidence) {
+        List<RecognizedText.Line> lines = new ArrayList<>();
+        String[] rows = text.split("\n");
+        for (int i = 0; i < rows.length; i++) {
+            if (rows[i].trim().isEmpty()) continue;
+            int top = MARGIN + i * LINE_PITCH;
+            lines.add(line(rows[i], lines.size(), MARGIN, top, MARGIN + rows[i].length() * CHAR_WIDTH,
+                    top + LINE_HEIGHT, confidence));
+        }
+        return join(lines);
+    }
+
+    /**
+     * A line whose words become elements spread over its box in proportion to length.
+     */
+    private static RecognizedText.Line line(String text, int block, int left, int top, int right, int bottom,
+                                            float confidence) {
+        List<RecognizedText.Element> elements = new ArrayList<>();
+        float perChar = text.isEmpty() ? 0 : (float) (right - left) / text.length();
+        int i = 0;
+        while (i < text.length()) {
+            if (text.charAt(i) == ' ') {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < text.length() && text.charAt(i) != ' ') i++;
+            elements.add(new RecognizedText.Element(text.substring(start, i),
+                    left + Math.round(start * perChar), top, left + Math.round(i * perChar), bottom, confidence));
+        }
+        return new RecognizedText.Line(text, block, left, top, right, bottom, confidence, elements);
+    }
+
+    private static RecognizedText join(List<RecognizedText.Line> lines) {
+        StringBuilder sb = new StringBuilder();
+        for (RecognizedText.Line line : lines) {
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(line.text);
+        }
+        return new RecognizedText(sb.toString(), lines);
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.aiprescriptionreader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Read-only drug formulary in the compiled RXF format (see {@link FormularyWriter}).
+ * The file is memory-mapped, so opening it only checks the header; names are looked
+ * up by binary search over the mapped index and a drug's record is decoded only when
+ * it is asked for. Nothing is copied onto the heap up front.
+ *
+ * Layout, big-endian:
+ * <pre>
+ *   header   "RXF1", version, drugCount, nameCount, ruleCount,
+ *            stringsOffset, namesOffset, drugsOffset, rulesOffset
+ *   strings  u16 length + UTF-8 bytes, each distinct string once
+ *   names    nameCount x (string, drug id), sorted by UTF-8 bytes; names and synonyms
+ *   drugs    drugCount x record offset, then the records
+ *   rules    ruleCount x (side A string, side B string, severity byte, description string)
+ * </pre>
+ * String references are offsets into the string table. A record is its name string
+ * followed by u8-counted lists of synonym, strength, form and class strings.
+ */
+public class Formulary {
+
+    static final int MAGIC = 0x52584631; // "RXF1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 36;
+    static final int NAME_ENTRY_SIZE = 8;
+    static final int RULE_ENTRY_SIZE = 13;
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public static class Drug {
+        public final int id;
+        public final String name;
+        public final List<String> synonyms;
+        public final List<String> strengths;
+        public final List<DosageForm> forms;
+        public final List<String> classes;
+
+        Drug(int id, String name, List<String> synonyms, List<String> strengths,
+             List<DosageForm> forms, List<String> classes) {
+            this.id = id;
+            this.name = name;
+            this.synonyms = Collections.unmodifiableList(synonyms);
+            this.strengths = Collections.unmodifiableList(strengths);
+            this.forms = Collections.unmodifiableList(forms);
+            this.classes = Collections.unmodifiableList(classes);
+        }
+    }
+
+    // Only absolute reads, so one buffer is safe to share between threads
+    private final ByteBuffer buffer;
+    private final int drugCount, nameCount, ruleCount;
+    private final int stringsOffset, namesOffset, drugsOffset, rulesOffset;
+
+    private Formulary(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a formulary file");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported formulary version " + version);
+        }
+        drugCount = buffer.getInt(8);
+        nameCount = buffer.getInt(12);
+        ruleCount = buffer.getInt(16);
+        stringsOffset = buffer.getInt(20);
+        namesOffset = buffer.getInt(24);
+        drugsOffset = buffer.getInt(28);
+        rulesOffset = buffer.getInt(32);
+        if (namesOffset + (long) nameCount * NAME_ENTRY_SIZE > buffer.capacity()
+                || drugsOffset + 4L * drugCount > buffer.capacity()
+                || rulesOffset + (long) ruleCount * RULE_ENTRY_SIZE > buffer.capacity()) {
+            throw new IOException("Truncated formulary file");
+        }
+    }
+
+    public static Formulary open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return map(raf.getChannel(), 0, raf.length());
+        }
+    }
+
+    /**
+     * Maps length bytes at offset, e.g. an uncompressed asset inside the APK. The
+     * mapping stays valid after the channel is closed.
+     */
+    public static Formulary map(FileChannel channel, long offset, long length) throws IOException {
+        return new Formulary(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+    }
+
+    public static Formulary wrap(ByteBuffer buffer) throws IOException {
+        return new Formulary(buffer);
+    }
+
+    public int drugCount() {
+        return drugCount;
+    }
+
+    public int ruleCount() {
+        return ruleCount;
+    }
+
+    /**
+     * Drug id for a name or synonym, case-insensitive, or -1.
+     */
+    public int find(String name) {
+        byte[] key = name.trim().toLowerCase(Locale.ROOT).getBytes(UTF_8);
+        int lo = 0, hi = nameCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int entry = namesOffset + mid * NAME_ENTRY_SIZE;
+            int cmp = compareString(buffer.getInt(entry), key);
+            if (cmp < 0) lo = mid + 1;
+            else if (cmp > 0) hi = mid - 1;
+            else return buffer.getInt(entry + 4);
+        }
+        return -1;
+    }
+
+    public Drug drug(int id) {
+        if (id < 0 || id >= drugCount) throw new IndexOutOfBoundsException("Drug id " + id);
+        int at = buffer.getInt(drugsOffset + 4 * id);
+        String name = string(buffer.getInt(at));
+        at += 4;
+
+        List<List<String>> lists = new ArrayList<>(4);
+        for (int list = 0; list < 4; list++) {
+            int count = buffer.get(at++) & 0xFF;
+            List<String> values = new ArrayList<>(count);
+            for (int i = 0; i < count; i++, at += 4) {
+                values.add(string(buffer.getInt(at)));
+            }
+            lists.add(values);
+        }
+
+        List<DosageForm> forms = new ArrayList<>();
+        for (String form : lists.get(2)) {
+            forms.add(DosageForm.valueOf(form));
+        }
+        return new Drug(id, name, lists.get(0), lists.get(1), forms, lists.get(3));
+    }
+
+    /**
+     * The drug with this name or synonym, or null.
+     */
+    public Drug lookup(String name) {
+        int id = find(name);
+        return id >= 0 ? drug(id) : null;
+    }
+
+    /**
+     * Every name and synonym, in index order.
+     */
+    public List<String> names() {
+        List<String> names = new ArrayList<>(nameCount);
+        for (int i = 0; i < nameCount; i++) {
+            names.add(string(buffer.getInt(namesOffset + i * NAME_ENTRY_SIZE)));
+        }
+        return names;
+    }
+
+    /**
+     * Builds an interaction checker from the formulary's drugs, classes and rules.
+     * Synonyms resolve to the drug they name.
+     */
+    public InteractionChecker interactionChecker() {
+        InteractionChecker.Builder builder = new InteractionChecker.Builder();
+        for (int id = 0; id < drugCount; id++) {
+            Drug drug = drug(id);
+            builder.addDrug(drug.name, drug.classes.toArray(new String[0]));
+            for (String synonym : drug.synonyms) {
+                builder.addSynonym(synonym, drug.name);
+            }
+        }
+        InteractionChecker.Severity[] severities = InteractionChecker.Severity.values();
+        for (int r = 0; r < ruleCount; r++) {
+            int at = rulesOffset + r * RULE_ENTRY_SIZE;
+            builder.addRule(string(buffer.getInt(at)), string(buffer.getInt(at + 4)),
+                    severities[buffer.get(at + 8)], string(buffer.getInt(at + 9)));
+        }
+        return builder.build();
+    }
+
+    private String string(int offset) {
+        int at = stringsOffset + offset;
+        int length = buffer.getShort(at) & 0xFFFF;
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        // Through Buffer: ByteBuffer.position(int) only exists from Java 9
+        ((Buffer) view).position(at + 2);
+        view.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Compares the stored string with key as unsigned bytes, without decoding it.
+     */
+    private int compareString(int offset, byte[] key) {
+        int at = stringsOffset + offset;
+        int length = buffer.getShort(at) & 0xFFFF;
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (buffer.get(at + 2 + i) & 0xFF) - (key[i] & 0xFF);
+            if (cmp != 0) return cmp;
+        }
+        return length - key.length;
+    }
+}
@@ -0,0 +1,283 @@
+package com.example.aiprescriptionreader;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiles a formulary source into the binary format read by {@link Formulary}.
+ * Run at build time:
+ * <pre>
+ *   java FormularyWriter formulary.tsv formulary.rxf
+ * </pre>
+ * The source is tab-separated, one entry per line; lists are comma-separated and may
+ * be left empty. Blank lines and lines starting with '#' are skipped.
+ * <pre>
+ *   drug  name  synonyms  strengths  forms  classes
+ *   rule  sideA  sideB  severity  description
+ * </pre>
+ * A rule side is a drug name or "class:" followed by a class name.
+ */
+public class FormularyWriter {
+
+    private static final String CLASS_PREFIX = "class:";
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+    private static final int MAX_LIST = 0xFF;
+
+    private static class DrugEntry {
+        final String name;
+        final List<String> synonyms, strengths, forms, classes;
+
+        DrugEntry(String name, List<String> synonyms, List<String> strengths,
+                  List<String> forms, List<String> classes) {
+            this.name = name;
+            this.synonyms = synonyms;
+            this.strengths = strengths;
+            this.forms = forms;
+            this.classes = classes;
+        }
+    }
+
+    private final List<DrugEntry> drugs = new ArrayList<>();
+    private final List<String[]> rules = new ArrayList<>();
+    private final List<InteractionChecker.Severity> severities = new ArrayList<>();
+    // Every name and synonym -> drug id
+    private final Map<String, Integer> names = new HashMap<>();
+    private final Set<String> classes = new HashSet<>();
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: FormularyWriter <source.tsv> <output.rxf>");
+            System.exit(2);
+        }
+        FormularyWriter writer = new FormularyWriter();
+        try (InputStream in = new FileInputStream(args[0])) {
+            writer.read(in);
+        }
+        try (OutputStream out = new FileOutputStream(args[1])) {
+            writer.write(out);
+        }
+        System.out.println("Wrote " + writer.drugs.size() + " drugs, " + writer.names.size()
+                + " names and " + writer.rules.size() + " rules to " + args[1]);
+    }
+
+    public void read(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, Formulary.UTF_8));
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty() || line.trim().startsWith("#")) continue;
+            String[] fields = line.split("\t", -1);
+            try {
+                if (fields[0].equals("drug") && fields.length == 6) {
+                    addDrug(fields[1], list(fields[2]), list(fields[3]), list(fields[4]), list(fields[5]));
+                } else if (fields[0].equals("rule") && fields.length == 5) {
+                    addRule(fields[1], fields[2],
+                            InteractionChecker.Severity.valueOf(fields[3].trim().toUpperCase(Locale.ROOT)),
+                            fields[4].trim());
+                } else {
+                    throw new IllegalArgumentException("Expected a drug or rule entry");
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    public FormularyWriter addDrug(String name, List<String> synonyms, List<String> strengths,
+                                   List<String> forms, List<String> drugClasses) {
+        int id = drugs.size();
+        List<String> synonymKeys = keys(synonyms);
+        List<String> classKeys = keys(drugClasses);
+        List<String> formNames = new ArrayList<>();
+        for (String form : forms) {
+            formNames.add(DosageForm.valueOf(form.trim().toUpperCase(Locale.ROOT)).name());
+        }
+        DrugEntry drug = new DrugEntry(key(name), synonymKeys, trimmed(strengths), formNames, classKeys);
+        checkListSize(drug.synonyms, drug.strengths, drug.forms, drug.classes);
+
+        addName(drug.name, id);
+        for (String synonym : drug.synonyms) addName(synonym, id);
+        classes.addAll(drug.classes);
+        drugs.add(drug);
+        return this;
+    }
+
+    /**
+     * Both sides must already be defined, as a drug, a synonym or a class.
+     */
+    public FormularyWriter addRule(String a, String b, InteractionChecker.Severity severity, String description) {
+        String keyA = key(a), keyB = key(b);
+        for (String side : new String[]{keyA, keyB}) {
+            boolean known = side.startsWith(CLASS_PREFIX)
+                    ? classes.contains(side.substring(CLASS_PREFIX.length()))
+                    : names.containsKey(side);
+            if (!known) throw new IllegalArgumentException("Unknown drug or class in rule: " + side);
+        }
+        rules.add(new String[]{keyA, keyB, description});
+        severities.add(severity);
+        return this;
+    }
+
+    public void write(OutputStream out) throws IOException {
+        StringTable strings = new StringTable();
+
+        String[] sortedNames = names.keySet().toArray(new String[0]);
+        final Map<String, byte[]> nameBytes = new HashMap<>();
+        for (String name : sortedNames) nameBytes.put(name, name.getBytes(Formulary.UTF_8));
+        Arrays.sort(sortedNames, new Comparator<String>() {
+            @Override
+            public int compare(String x, String y) {
+                return compareBytes(nameBytes.get(x), nameBytes.get(y));
+            }
+        });
+
+        ByteArrayOutputStream nameIndex = new ByteArrayOutputStream();
+        DataOutputStream names = new DataOutputStream(nameIndex);
+        for (String name : sortedNames) {
+            names.writeInt(strings.add(name));
+            names.writeInt(this.names.get(name));
+        }
+
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        DataOutputStream records = new DataOutputStream(recordBytes);
+        int[] recordStarts = new int[drugs.size()];
+        for (int id = 0; id < drugs.size(); id++) {
+            DrugEntry drug = drugs.get(id);
+            recordStarts[id] = records.size();
+            records.writeInt(strings.add(drug.name));
+            for (List<String> list : Arrays.asList(drug.synonyms, drug.strengths, drug.forms, drug.classes)) {
+                records.writeByte(list.size());
+                for (String value : list) records.writeInt(strings.add(value));
+            }
+        }
+
+        ByteArrayOutputStream ruleBytes = new ByteArrayOutputStream();
+        DataOutputStream ruleTable = new DataOutputStream(ruleBytes);
+        for (int r = 0; r < rules.size(); r++) {
+            ruleTable.writeInt(strings.add(rules.get(r)[0]));
+            ruleTable.writeInt(strings.add(rules.get(r)[1]));
+            ruleTable.writeByte(severities.get(r).ordinal());
+            ruleTable.writeInt(strings.add(rules.get(r)[2]));
+        }
+
+        int stringsOffset = Formulary.HEADER_SIZE;
+        int namesOffset = stringsOffset + strings.size();
+        int drugsOffset = namesOffset + nameIndex.size();
+        int recordsOffset = drugsOffset + 4 * drugs.size();
+        int rulesOffset = recordsOffset + recordBytes.size();
+
+        DataOutputStream file = new DataOutputStream(out);
+        file.writeInt(Formulary.MAGIC);
+        file.writeInt(Formulary.VERSION);
+        file.writeInt(drugs.size());
+        file.writeInt(sortedNames.length);
+        file.writeInt(rules.size());
+        file.writeInt(stringsOffset);
+        file.writeInt(namesOffset);
+        file.writeInt(drugsOffset);
+        file.writeInt(rulesOffset);
+        strings.writeTo(file);
+        nameIndex.writeTo(file);
+        for (int start : recordStarts) file.writeInt(recordsOffset + start);
+        recordBytes.writeTo(file);
+        ruleBytes.writeTo(file);
+        file.flush();
+    }
+
+    private void addName(String name, int id) {
+        Integer existing = names.get(name);
+        if (existing != null && existing != id) {
+            throw new IllegalArgumentException("'" + name + "' already names " + drugs.get(existing).name);
+        }
+        names.put(name, id);
+    }
+
+    private static void checkListSize(List<?>... lists) {
+        for (List<?> list : lists) {
+            if (list.size() > MAX_LIST) throw new IllegalArgumentException("More than " + MAX_LIST + " values");
+        }
+    }
+
+    private static int compareBytes(byte[] x, byte[] y) {
+        int n = Math.min(x.length, y.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (x[i] & 0xFF) - (y[i] & 0xFF);
+            if (cmp != 0) return cmp;
+        }
+        return x.length - y.length;
+    }
+
+    private static List<String> list(String field) {
+        if (field.trim().isEmpty()) return Collections.emptyList();
+        return Arrays.asList(field.split(","));
+    }
+
+    private static List<String> keys(List<String> values) {
+        List<String> keys = new ArrayList<>();
+        for (String value : values) {
+            if (!value.trim().isEmpty()) keys.add(key(value));
+        }
+        return keys;
+    }
+
+    private static List<String> trimmed(List<String> values) {
+        List<String> result = new ArrayList<>();
+        for (String value : values) {
+            if (!value.trim().isEmpty()) result.add(value.trim());
+        }
+        return result;
+    }
+
+    private static String key(String name) {
+        String key = name.trim().toLowerCase(Locale.ROOT);
+        if (key.isEmpty()) throw new IllegalArgumentException("Empty name");
+        return key;
+    }
+
+    /**
+     * Each distinct string is stored once and referred to by its offset.
+     */
+    private static class StringTable {
+        private final Map<String, Integer> offsets = new HashMap<>();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        int add(String value) throws IOException {
+            Integer offset = offsets.get(value);
+            if (offset != null) return offset;
+            byte[] utf8 = value.getBytes(Formulary.UTF_8);
+            if (utf8.length > MAX_STRING_BYTES) throw new IllegalArgumentException("String too long: " + value);
+            offset = out.size();
+            out.writeShort(utf8.length);
+            out.write(utf8);
+            offsets.put(value, offset);
+            return offset;
+        }
+
+        int size() {
+            return out.size();
+        }
+
+        void writeTo(OutputStream target) throws IOException {
+            bytes.writeTo(target);
+        }
+    }
+}
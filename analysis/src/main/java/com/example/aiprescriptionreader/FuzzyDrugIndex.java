@@ -0,0 +1,266 @@
+package com.example.aiprescriptionreader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * SymSpell-style deletion dictionary for OCR-mangled drug names.
+ *
+ * Every term is indexed under all strings reachable by deleting up to maxDistance
+ * characters from its first PREFIX_LENGTH characters. A lookup generates the same
+ * deletes for the query and only verifies the terms that share one, so the cost
+ * depends on the query length and not on the formulary size.
+ *
+ * Deletes are never materialised: each is a skip mask over the prefix, hashed to
+ * 40 bits and packed with the term id into one sorted long[], so a lookup is a few
+ * binary searches over primitive arrays. A hash collision only costs
+ * an extra verification.
+ */
+public class FuzzyDrugIndex {
+
+    private static final int PREFIX_LENGTH = 7;
+    private static final int ID_BITS = 24;
+    private static final long ID_MASK = (1L << ID_BITS) - 1;
+
+    private final String[] terms;
+    // (40-bit delete hash << ID_BITS) | term id, sorted
+    private final long[] entries;
+    private final int maxDistance;
+    private final int maxTermLength;
+
+    public FuzzyDrugIndex(Collection<String> drugNames, int maxDistance) {
+        if (maxDistance < 0 || maxDistance >= PREFIX_LENGTH) {
+            throw new IllegalArgumentException("maxDistance must be in [0, " + (PREFIX_LENGTH - 1) + "]");
+        }
+        Set<String> unique = new LinkedHashSet<>();
+        for (String name : drugNames) {
+            if (name == null) continue;
+            String normalized = normalize(name);
+            if (!normalized.isEmpty()) unique.add(normalized);
+        }
+        if (unique.size() > ID_MASK) {
+            throw new IllegalArgumentException("Too many terms: " + unique.size());
+        }
+        this.terms = unique.toArray(new String[0]);
+        this.maxDistance = maxDistance;
+
+        long[] hashes = new long[maskCount(PREFIX_LENGTH, maxDistance)];
+        long[] packed = new long[terms.length * hashes.length];
+        int size = 0;
+        int longest = 0;
+        for (int id = 0; id < terms.length; id++) {
+            String term = terms[id];
+            longest = Math.max(longest, term.length());
+            int count = deleteHashes(term, maxDistance, hashes);
+            for (int i = 0; i < count; i++) {
+                packed[size++] = (hashes[i] << ID_BITS) | id;
+            }
+        }
+        this.maxTermLength = longest;
+        this.entries = Arrays.copyOf(packed, size);
+        Arrays.sort(entries);
+    }
+
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    public int size() {
+        return terms.length;
+    }
+
+    /**
+     * Best candidates for the token within the given edit distance (capped at the
+     * distance the index was built for), closest first.
+     */
+    public List<Candidate> lookup(String token, int distance) {
+        distance = Math.min(distance, maxDistance);
+        String input = normalize(token);
+        if (input.isEmpty() || input.length() - distance > maxTermLength) {
+            return Collections.<Candidate>emptyList();
+        }
+
+        List<Candidate> results = new ArrayList<>();
+        long[] hashes = new long[maskCount(PREFIX_LENGTH, distance)];
+        int count = deleteHashes(input, distance, hashes);
+        int[] checked = new int[8];
+        int checkedCount = 0;
+
+        for (int h = 0; h < count; h++) {
+            long key = hashes[h] << ID_BITS;
+            for (int i = lowerBound(key); i < entries.length && (entries[i] & ~ID_MASK) == key; i++) {
+                int id = (int) (entries[i] & ID_MASK);
+                if (contains(checked, checkedCount, id)) continue;
+                if (checkedCount == checked.length) checked = Arrays.copyOf(checked, checkedCount * 2);
+                checked[checkedCount++] = id;
+
+                String term = terms[id];
+                if (Math.abs(term.length() - input.length()) > distance) continue;
+                int d = editDistance(input, term, distance);
+                if (d <= distance) {
+                    results.add(new Candidate(term, d, score(d, token, input, term)));
+                }
+            }
+        }
+
+        Collections.sort(results, BEST_FIRST);
+        return results;
+    }
+
+    /**
+     * Closest candidate or null when nothing is within the distance.
+     */
+    public Candidate best(String token, int distance) {
+        List<Candidate> candidates = lookup(token, distance);
+        return candidates.isEmpty() ? null : candidates.get(0);
+    }
+
+    private static final Comparator<Candidate> BEST_FIRST = new Comparator<Candidate>() {
+        @Override
+        public int compare(Candidate a, Candidate b) {
+            if (a.distance != b.distance) return Integer.compare(a.distance, b.distance);
+            return Float.compare(b.score, a.score);
+        }
+    };
+
+    /**
+     * A token that only matches after normalization (a digit read for a letter, a
+     * split word) was still corrected, so it scores as half an edit rather than 1.0.
+     */
+    private static float score(int distance, String raw, String normalized, String term) {
+        float edits = distance;
+        if (distance == 0 && !raw.toLowerCase(Locale.ROOT).equals(term)) edits = 0.5f;
+        return 1f - edits / Math.max(normalized.length(), term.length());
+    }
+
+    private int lowerBound(long key) {
+        int lo = 0, hi = entries.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (entries[mid] < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) return true;
+        }
+        return false;
+    }
+
+    private static int maskCount(int length, int distance) {
+        // Sum of C(length, k) for k <= distance
+        int count = 0, c = 1;
+        for (int k = 0; k <= distance && k <= length; k++) {
+            count += c;
+            c = c * (length - k) / (k + 1);
+        }
+        return count;
+    }
+
+    /**
+     * Hashes every delete of the word's prefix with at most distance characters removed
+     * (keeping at least one). Duplicate deletes of repeated letters hash identically.
+     */
+    private static int deleteHashes(String word, int distance, long[] out) {
+        int length = Math.min(word.length(), PREFIX_LENGTH);
+        int count = 0;
+        for (int mask = 0; mask < (1 << length); mask++) {
+            int removed = Integer.bitCount(mask);
+            if (removed > distance || removed == length) continue;
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < length; i++) {
+                if ((mask & (1 << i)) != 0) continue;
+                hash ^= word.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            out[count++] = hash >>> ID_BITS;
+        }
+        return count;
+    }
+
+    /**
+     * Lowercases, drops spaces and hyphens (OCR splits words) and maps digits that OCR
+     * commonly substitutes for letters.
+     */
+    static String normalize(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = Character.toLowerCase(s.charAt(i));
+            switch (c) {
+                case '0': c = 'o'; break;
+                case '1': c = 'l'; break;
+                case '5': c = 's'; break;
+                case '8': c = 'b'; break;
+                case ' ':
+                case '-':
+                    continue;
+            }
+            sb.append(c);
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Optimal string alignment distance with early exit once every cell in a row
+     * exceeds the limit. Returns limit + 1 when the distance is larger than the limit.
+     */
+    static int editDistance(String a, String b, int limit) {
+        int n = a.length(), m = b.length();
+        if (Math.abs(n - m) > limit) return limit + 1;
+
+        int[] prev2 = new int[m + 1];
+        int[] prev = new int[m + 1];
+        int[] cur = new int[m + 1];
+        for (int j = 0; j <= m; j++) prev[j] = j;
+
+        for (int i = 1; i <= n; i++) {
+            cur[0] = i;
+            int rowMin = cur[0];
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= m; j++) {
+                char cb = b.charAt(j - 1);
+                int cost = ca == cb ? 0 : 1;
+                int v = Math.min(Math.min(prev[j] + 1, cur[j - 1] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && ca == b.charAt(j - 2) && a.charAt(i - 2) == cb) {
+                    v = Math.min(v, prev2[j - 2] + 1);
+                }
+                cur[j] = v;
+                if (v < rowMin) rowMin = v;
+            }
+            if (rowMin > limit) return limit + 1;
+            int[] t = prev2;
+            prev2 = prev;
+            prev = cur;
+            cur = t;
+        }
+        return Math.min(prev[m], limit + 1);
+    }
+
+    public static class Candidate {
+        public final String name;
+        public final int distance;
+        // 1.0 only when the token is the term as written, falling towards 0 with each edit
+        public final float score;
+
+        Candidate(String name, int distance, float score) {
+            this.name = name;
+            this.distance = distance;
+            this.score = score;
+        }
+
+        @Override
+        public String toString() {
+            return name + " (" + distance + ", " + score + ")";
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package com.example.aiprescriptionreader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Cleans up a photographed page before recognition: grayscale, upright rotation,
+ * deskew, then either contrast stretching or adaptive (Bradley) thresholding.
+ *
+ * Works on plain pixel arrays so it runs and benchmarks on the JVM. Each step is split
+ * into row stripes run in parallel, the last stripe on the calling thread. Scratch
+ * buffers are kept between calls and only grow, so steady-state processing of
+ * same-sized frames allocates nothing but the stripe tasks. One call at a time per
+ * instance.
+ */
+public class ImagePreprocessor {
+
+    // Integral sums are ints: 255 * pixels must not overflow
+    public static final int MAX_PIXELS = Integer.MAX_VALUE / 255;
+
+    static final float MAX_SKEW_DEGREES = 8f;
+    static final float SKEW_STEP_DEGREES = 0.5f;
+    // Skew below this is left alone; resampling costs more than it gains
+    static final float MIN_SKEW_DEGREES = 0.4f;
+    static final int SKEW_SAMPLE_STEP = 4;
+
+    // Bradley: a pixel is ink when it is this much darker than its window mean
+    static final int THRESHOLD_PERCENT = 15;
+    static final int WINDOW_DIVISOR = 16;
+
+    public enum Mode { GRAY, BINARY }
+
+    /**
+     * Output of one call. The pixel array is scratch owned by the preprocessor and is
+     * overwritten by the next call.
+     */
+    public static class Result {
+        public final byte[] pixels;
+        public final int width, height;
+        public final float skewDegrees;
+
+        Result(byte[] pixels, int width, int height, float skewDegrees) {
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+            this.skewDegrees = skewDegrees;
+        }
+    }
+
+    private interface StripeTask {
+        void run(int from, int to);
+    }
+
+    private final ExecutorService executor;
+    private final int stripes;
+
+    private byte[] gray = new byte[0];
+    private byte[] upright = new byte[0];
+    private byte[] output = new byte[0];
+    private int[] integral = new int[0];
+    private int[] sampleX = new int[0];
+    private int[] sampleY = new int[0];
+    private final List<Future<?>> pending = new ArrayList<>();
+
+    /**
+     * @param executor runs all but one stripe; null to run everything on the caller
+     * @param stripes  number of row stripes per step, normally the core count
+     */
+    public ImagePreprocessor(ExecutorService executor, int stripes) {
+        this.executor = executor;
+        this.stripes = executor != null ? Math.max(1, stripes) : 1;
+    }
+
+    /**
+     * Processes ARGB pixels (as from Bitmap.getPixels) that display upright after a
+     * clockwise rotation of rotationDegrees, a multiple of 90 (negative or over 360 is
+     * fine). The result is upright.
+     */
+    public Result process(int[] argb, int width, int height, int rotationDegrees, Mode mode) {
+        int size = width * height;
+        if (width <= 0 || height <= 0 || size > MAX_PIXELS || argb.length < size) {
+            throw new IllegalArgumentException("Bad image size " + width + "x" + height);
+        }
+        if (rotationDegrees % 90 != 0) {
+            throw new IllegalArgumentException("Rotation must be a multiple of 90: " + rotationDegrees);
+        }
+        rotationDegrees = ((rotationDegrees % 360) + 360) % 360;
+        gray = ensure(gray, size);
+        upright = ensure(upright, size);
+        output = ensure(output, size);
+
+        grayscale(argb, width, height);
+        int w = rotationDegrees % 180 == 0 ? width : height;
+        int h = rotationDegrees % 180 == 0 ? height : width;
+        rotate(width, height, rotationDegrees);
+
+        float skew = estimateSkew(upright, w, h);
+        byte[] source = upright;
+        if (Math.abs(skew) >= MIN_SKEW_DEGREES) {
+            deskew(w, h, skew);
+            source = gray;
+        }
+
+        if (mode == Mode.BINARY) {
+            threshold(source, w, h);
+        } else {
+            stretch(source, w, h);
+        }
+        return new Result(output, w, h, Math.abs(skew) >= MIN_SKEW_DEGREES ? skew : 0f);
+    }
+
+    /**
+     * Expands 8-bit gray into opaque ARGB, e.g. for Bitmap.setPixels.
+     */
+    public static void toArgb(byte[] gray, int[] argb, int count) {
+        for (int i = 0; i < count; i++) {
+            int v = gray[i] & 0xff;
+            argb[i] = 0xff000000 | (v << 16) | (v << 8) | v;
+        }
+    }
+
+    /**
+     * Releases the scratch buffers; they are reallocated on the next call.
+     */
+    public void trim() {
+        gray = new byte[0];
+        upright = new byte[0];
+        output = new byte[0];
+        integral = new int[0];
+        sampleX = new int[0];
+        sampleY = new int[0];
+    }
+
+    private void grayscale(int[] argb, int width, int height) {
+        final byte[] dst = gray;
+        runStripes(height, new StripeTask() {
+            @Override
+            public void run(int from, int to) {
+                for (int i = from * width, end = to * width; i < end; i++) {
+                    int p = argb[i];
+                    // Integer Rec. 601 luma
+                    int y = (77 * ((p >> 16) & 0xff) + 150 * ((p >> 8) & 0xff) + 29 * (p & 0xff)) >> 8;
+                    dst[i] = (byte) y;
+                }
+            }
+        });
+    }
+
+    /**
+     * gray (width x height) rotated clockwise by degrees into upright.
+     */
+    private void rotate(int width, int height, int degrees) {
+        final byte[] src = gray, dst = upright;
+        if (degrees == 0) {
+            System.arraycopy(src, 0, dst, 0, width * height);
+            return;
+        }
+        final int w = degrees % 180 == 0 ? width : height;
+        final int h = degrees % 180 == 0 ? height : width;
+        runStripes(h, new StripeTask() {
+            @Override
+            public void run(int from, int to) {
+                for (int y = from; y < to; y++) {
+                    int row = y * w;
+                    for (int x = 0; x < w; x++) {
+                        int sx, sy;
+                        if (degrees == 90) {
+                            sx = y;
+                            sy = height - 1 - x;
+                        } else if (degrees == 180) {
+                            sx = width - 1 - x;
+                            sy = height - 1 - y;
+                        } else {
+                            // 270; process() has normalized the angle
+                            sx = width - 1 - y;
+                            sy = x;
+                        }
+                        dst[row + x] = src[sy * width + sx];
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Projection profile search: dark sample points are projected onto rows at each
+     * candidate angle, and the angle whose row histogram is most peaked (text lines
+     * falling into few rows) wins. Positive means the text runs downhill to the right.
+     */
+    float estimateSkew(byte[] src, int w, int h) {
+        int maxSamples = (w / SKEW_SAMPLE_STEP + 1) * (h / SKEW_SAMPLE_STEP + 1);
+        sampleX = ensure(sampleX, maxSamples);
+        sampleY = ensure(sampleY, maxSamples);
+
+        long sum = 0;
+        int count = 0;
+        for (int y = 0; y < h; y += SKEW_SAMPLE_STEP) {
+            for (int x = 0; x < w; x += SKEW_SAMPLE_STEP) {
+                sum += src[y * w + x] & 0xff;
+                count++;
+            }
+        }
+        if (count == 0) return 0f;
+        int dark = (int) (sum / count * 3 / 4);
+
+        int samples = 0;
+        for (int y = 0; y < h; y += SKEW_SAMPLE_STEP) {
+            for (int x = 0; x < w; x += SKEW_SAMPLE_STEP) {
+                if ((src[y * w + x] & 0xff) < dark) {
+                    sampleX[samples] = x;
+                    sampleY[samples] = y;
+                    samples++;
+                }
+            }
+        }
+        if (samples < 32) return 0f;
+
+        // Projected rows fall in [0, h + w) once offset by w; each bucket is SKEW_SAMPLE_STEP rows
+        int span = h + w;
+        int buckets = (span - 1) / SKEW_SAMPLE_STEP + 1;
+        int[] histogram = integral = ensure(integral, buckets);
+        float best = 0f;
+        long bestScore = -1;
+        for (float angle = -MAX_SKEW_DEGREES; angle <= MAX_SKEW_DEGREES + 1e-3f; angle += SKEW_STEP_DEGREES) {
+            double radians = Math.toRadians(angle);
+            float sin = (float) Math.sin(radians), cos = (float) Math.cos(radians);
+            Arrays.fill(histogram, 0, buckets, 0);
+            for (int i = 0; i < samples; i++) {
+                // Row of the point once the page is rotated back by angle
+                int row = (int) (sampleY[i] * cos - sampleX[i] * sin) + w;
+                if (row >= 0 && row < span) histogram[row / SKEW_SAMPLE_STEP]++;
+            }
+            long score = 0;
+            for (int i = 0; i < buckets; i++) {
+                score += (long) histogram[i] * histogram[i];
+            }
+            if (score > bestScore || (score == bestScore && Math.abs(angle) < Math.abs(best))) {
+                bestScore = score;
+                best = angle;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Rotates upright by -degrees about the centre into gray, filling with white.
+     */
+    private void deskew(int w, int h, float degrees) {
+        final byte[] src = upright, dst = gray;
+        double radians = Math.toRadians(degrees);
+        final float sin = (float) Math.sin(radians), cos = (float) Math.cos(radians);
+        final float cx = w / 2f, cy = h / 2f;
+        runStripes(h, new StripeTask() {
+            @Override
+            public void run(int from, int to) {
+                for (int y = from; y < to; y++) {
+                    float dy = y - cy;
+                    int row = y * w;
+                    for (int x = 0; x < w; x++) {
+                        float dx = x - cx;
+                        // Output pixel (x, y) comes from the source rotated forward by degrees
+                        int sx = (int) (cx + dx * cos - dy * sin + 0.5f);
+                        int sy = (int) (cy + dx * sin + dy * cos + 0.5f);
+                        dst[row + x] = sx >= 0 && sx < w && sy >= 0 && sy < h ? src[sy * w + sx] : (byte) 0xff;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Bradley adaptive threshold over an integral image.
+     */
+    private void threshold(byte[] src, int w, int h) {
+        final int stride = w + 1;
+        final int[] sums = integral = ensure(integral, stride * (h + 1));
+        Arrays.fill(sums, 0, stride, 0);
+
+        // Row prefix sums in stripes, then column accumulation in column stripes
+        runStripes(h, new StripeTask() {
+            @Override
+            public void run(int from, int to) {
+                for (int y = from; y < to; y++) {
+                    int rowSum = 0;
+                    int out = (y + 1) * stride;
+                    sums[out] = 0;
+                    for (int x = 0; x < w; x++) {
+                        rowSum += src[y * w + x] & 0xff;
+                        sums[out + x + 1] = rowSum;
+                    }
+                }
+            }
+        });
+        runStripes(w, new StripeTask() {
+            @Override
+            public void run(int from, int to) {
+                for (int y = 2; y <= h; y++) {
+                    int row = y * stride, prev = row - stride;
+                    for (int x = from + 1; x <= to; x++) {
+                        sums[row + x] += sums[prev + x];
+                    }
+                }
+            }
+        });
+
+        final byte[] dst = output;
+        final int half = Math.max(1, Math.max(w, h) / WINDOW_DIVISOR / 2);
+        runStripes(h, new StripeTask() {
+            @Override
+            public void run(int from, int to) {
+                for (int y = from; y < to; y++) {
+                    int y0 = Math.max(0, y - half), y1 = Math.min(h, y + half + 1);
+                    for (int x = 0; x < w; x++) {
+                        int x0 = Math.max(0, x - half), x1 = Math.min(w, x + half + 1);
+                        int area = (x1 - x0) * (y1 - y0);
+                        long sum = (long) sums[y1 * stride + x1] - sums[y0 * stride + x1]
+                                - sums[y1 * stride + x0] + sums[y0 * stride + x0];
+                        int value = src[y * w + x] & 0xff;
+                        dst[y * w + x] = (long) value * area * 100 < sum * (100 - THRESHOLD_PERCENT) ? 0 : (byte) 0xff;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Linear stretch so the 1st and 99th luminance percentiles map to black and white.
+     */
+    private void stretch(byte[] src, int w, int h) {
+        int size = w * h;
+        int[] histogram = integral = ensure(integral, 256);
+        Arrays.fill(histogram, 0, 256, 0);
+        for (int i = 0; i < size; i += 3) {
+            histogram[src[i] & 0xff]++;
+        }
+        int samples = (size + 2) / 3;
+        int low = percentile(histogram, samples / 100);
+        int high = percentile(histogram, samples - samples / 100);
+        final int lo = low, range = Math.max(1, high - low);
+        final byte[] dst = output;
+        runStripes(h, new StripeTask() {
+            @Override
+            public void run(int from, int to) {
+                for (int i = from * w, end = to * w; i < end; i++) {
+                    int v = ((src[i] & 0xff) - lo) * 255 / range;
+                    dst[i] = (byte) (v < 0 ? 0 : v > 255 ? 255 : v);
+                }
+            }
+        });
+    }
+
+    private static int percentile(int[] histogram, int rank) {
+        int seen = 0;
+        for (int v = 0; v < 256; v++) {
+            seen += histogram[v];
+            if (seen > rank) return v;
+        }
+        return 255;
+    }
+
+    private void runStripes(int rows, StripeTask task) {
+        int n = Math.min(stripes, rows);
+        if (n <= 1) {
+            task.run(0, rows);
+            return;
+        }
+        pending.clear();
+        for (int s = 0; s < n - 1; s++) {
+            final int from = rows * s / n, to = rows * (s + 1) / n;
+            pending.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    task.run(from, to);
+                }
+            }));
+        }
+        task.run(rows * (n - 1) / n, rows);
+        try {
+            for (Future<?> future : pending) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Preprocessing failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Preprocessing interrupted", e);
+        }
+    }
+
+    private static byte[] ensure(byte[] buffer, int size) {
+        return buffer.length >= size ? buffer : new byte[size];
+    }
+
+    private static int[] ensure(int[] buffer, int size) {
+        return buffer.length >= size ? buffer : new int[size];
+    }
+}
@@ -0,0 +1,367 @@
+package com.example.aiprescriptionreader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Drug-drug interaction lookup. Drugs are interned to dense int ids; each drug's
+ * interaction partners are kept as a sparse bitset (only the non-zero 64-bit words,
+ * with their word index). A check builds one dense bitset of the comparison set
+ * (prescription plus history) and ANDs each prescribed drug's words against it, so
+ * the cost is a few word operations per prescribed drug however large the history.
+ *
+ * Rules may name a class ("class:nsaid") instead of a drug; they are expanded to
+ * every member when the checker is built.
+ */
+public class InteractionChecker {
+
+    public enum Severity { MINOR, MODERATE, MAJOR }
+
+    public static class Interaction {
+        public final String drugA, drugB;
+        public final Severity severity;
+        public final String description;
+        // True when drugB comes from the history rather than this prescription
+        public final boolean withHistory;
+
+        Interaction(String drugA, String drugB, Severity severity, String description, boolean withHistory) {
+            this.drugA = drugA;
+            this.drugB = drugB;
+            this.severity = severity;
+            this.description = description;
+            this.withHistory = withHistory;
+        }
+
+        @Override
+        public String toString() {
+            return severity + ": " + drugA + " + " + drugB + " (" + description + ")";
+        }
+    }
+
+    private static final String CLASS_PREFIX = "class:";
+
+    private static volatile InteractionChecker defaultChecker;
+
+    public static InteractionChecker getDefault() {
+        InteractionChecker checker = defaultChecker;
+        if (checker == null) {
+            synchronized (InteractionChecker.class) {
+                if (defaultChecker == null) defaultChecker = defaults().build();
+                checker = defaultChecker;
+            }
+        }
+        return checker;
+    }
+
+    public static void setDefault(InteractionChecker checker) {
+        defaultChecker = checker;
+    }
+
+    /**
+     * A small built-in rule set covering the default drug list and common
+     * high-risk combinations.
+     */
+    public static Builder defaults() {
+        return new Builder()
+                .addDrug("aspirin", "nsaid", "antiplatelet")
+                .addDrug("ibuprofen", "nsaid")
+                .addDrug("naproxen", "nsaid")
+                .addDrug("diclofenac", "nsaid")
+                .addDrug("warfarin", "anticoagulant")
+                .addDrug("clopidogrel", "antiplatelet")
+                .addDrug("metformin")
+                .addDrug("iohexol", "contrast")
+                .addDrug("iopamidol", "contrast")
+                .addDrug("atorvastatin", "statin")
+                .addDrug("simvastatin", "statin")
+                .addDrug("clarithromycin", "macrolide")
+                .addDrug("azithromycin", "macrolide")
+                .addDrug("amlodipine")
+                .addDrug("losartan", "arb")
+                .addDrug("spironolactone", "potassium_sparing")
+                .addDrug("omeprazole", "ppi")
+                .addDrug("levothyroxine")
+                .addDrug("paracetamol")
+                .addDrug("amoxicillin")
+                .addDrug("insulin")
+                .addRule("metformin", "class:contrast", Severity.MAJOR,
+                        "Iodinated contrast can cause lactic acidosis with metformin; hold metformin")
+                .addRule("class:nsaid", "class:nsaid", Severity.MODERATE,
+                        "Two NSAIDs: duplicate therapy, higher GI bleeding and kidney risk")
+                .addRule("class:nsaid", "class:anticoagulant", Severity.MAJOR,
+                        "Increased bleeding risk")
+                .addRule("class:antiplatelet", "class:anticoagulant", Severity.MAJOR,
+                        "Increased bleeding risk")
+                .addRule("class:statin", "clarithromycin", Severity.MAJOR,
+                        "Raised statin levels, risk of myopathy")
+                .addRule("simvastatin", "amlodipine", Severity.MODERATE,
+                        "Keep simvastatin at 20 mg or less with amlodipine")
+                .addRule("class:arb", "class:potassium_sparing", Severity.MAJOR,
+                        "Risk of hyperkalaemia")
+                .addRule("class:nsaid", "class:arb", Severity.MODERATE,
+                        "Reduced blood pressure control and kidney function")
+                .addRule("clopidogrel", "omeprazole", Severity.MODERATE,
+                        "Omeprazole reduces clopidogrel activation")
+                .addRule("levothyroxine", "class:ppi", Severity.MINOR,
+                        "Reduced levothyroxine absorption");
+    }
+
+    private final String[] names;
+    private final Map<String, Integer> ids;
+    private final int words;
+
+    // Sparse bitset rows: drug d owns entries [rowStart[d], rowStart[d + 1])
+    private final int[] rowStart;
+    private final int[] wordIndex;
+    private final long[] wordBits;
+
+    // Partners of drug d sorted by id, with the rule behind each pair
+    private final int[] partnerStart;
+    private final int[] partners;
+    private final int[] partnerRule;
+
+    private final Severity[] ruleSeverity;
+    private final String[] ruleDescription;
+
+    private InteractionChecker(String[] names, Map<String, Integer> ids, int[][] partnerLists, int[][] ruleLists,
+                               Severity[] ruleSeverity, String[] ruleDescription) {
+        this.names = names;
+        this.ids = ids;
+        this.words = (names.length + 63) >>> 6;
+        this.ruleSeverity = ruleSeverity;
+        this.ruleDescription = ruleDescription;
+
+        int n = names.length;
+        partnerStart = new int[n + 1];
+        rowStart = new int[n + 1];
+        int pairCount = 0, wordCount = 0;
+        for (int d = 0; d < n; d++) {
+            pairCount += partnerLists[d].length;
+            wordCount += distinctWords(partnerLists[d]);
+        }
+        partners = new int[pairCount];
+        partnerRule = new int[pairCount];
+        wordIndex = new int[wordCount];
+        wordBits = new long[wordCount];
+
+        int p = 0, w = 0;
+        for (int d = 0; d < n; d++) {
+            partnerStart[d] = p;
+            rowStart[d] = w;
+            int[] list = partnerLists[d];
+            for (int i = 0; i < list.length; i++) {
+                partners[p] = list[i];
+                partnerRule[p] = ruleLists[d][i];
+                p++;
+                int word = list[i] >>> 6;
+                if (w == rowStart[d] || wordIndex[w - 1] != word) {
+                    wordIndex[w] = word;
+                    w++;
+                }
+                wordBits[w - 1] |= 1L << list[i];
+            }
+        }
+        partnerStart[n] = p;
+        rowStart[n] = w;
+    }
+
+    private static int distinctWords(int[] sortedIds) {
+        int count = 0, last = -1;
+        for (int id : sortedIds) {
+            if ((id >>> 6) != last) {
+                count++;
+                last = id >>> 6;
+            }
+        }
+        return count;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Dense id of a drug, or -1 when it is not in the formulary.
+     */
+    public int idOf(String name) {
+        Integer id = ids.get(name.trim().toLowerCase(Locale.ROOT));
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Interactions among the prescribed drugs and between them and the history,
+     * most severe first. Unknown names are ignored.
+     */
+    public List<Interaction> check(Collection<String> prescribed, Collection<String> history) {
+        long[] current = new long[words];
+        long[] all = new long[words];
+        int[] rx = new int[prescribed.size()];
+        int rxCount = 0;
+        for (String name : prescribed) {
+            int id = idOf(name);
+            if (id < 0 || (current[id >>> 6] & (1L << id)) != 0) continue;
+            current[id >>> 6] |= 1L << id;
+            rx[rxCount++] = id;
+        }
+        System.arraycopy(current, 0, all, 0, words);
+        for (String name : history) {
+            int id = idOf(name);
+            if (id >= 0) all[id >>> 6] |= 1L << id;
+        }
+
+        List<Interaction> found = new ArrayList<>();
+        for (int i = 0; i < rxCount; i++) {
+            int a = rx[i];
+            for (int w = rowStart[a]; w < rowStart[a + 1]; w++) {
+                long hits = wordBits[w] & all[wordIndex[w]];
+                while (hits != 0) {
+                    int b = (wordIndex[w] << 6) + Long.numberOfTrailingZeros(hits);
+                    hits &= hits - 1;
+                    boolean bPrescribed = (current[b >>> 6] & (1L << b)) != 0;
+                    // Each prescribed pair once
+                    if (bPrescribed && b <= a) continue;
+                    int rule = ruleFor(a, b);
+                    found.add(new Interaction(names[a], names[b], ruleSeverity[rule], ruleDescription[rule],
+                            !bPrescribed));
+                }
+            }
+        }
+        Collections.sort(found, MOST_SEVERE_FIRST);
+        return found;
+    }
+
+    private int ruleFor(int a, int b) {
+        int index = Arrays.binarySearch(partners, partnerStart[a], partnerStart[a + 1], b);
+        return partnerRule[index];
+    }
+
+    private static final Comparator<Interaction> MOST_SEVERE_FIRST = new Comparator<Interaction>() {
+        @Override
+        public int compare(Interaction x, Interaction y) {
+            return y.severity.compareTo(x.severity);
+        }
+    };
+
+    public static class Builder {
+        private final Map<String, List<String>> drugClasses = new LinkedHashMap<>();
+        private final List<String[]> rules = new ArrayList<>();
+        private final List<Severity> severities = new ArrayList<>();
+        private final Map<String, String> synonyms = new HashMap<>();
+
+        public Builder addDrug(String name, String... classes) {
+            List<String> list = drugClasses.get(key(name));
+            if (list == null) {
+                list = new ArrayList<>();
+                drugClasses.put(key(name), list);
+            }
+            for (String c : classes) list.add(key(c));
+            return this;
+        }
+
+        /**
+         * Another name for a drug; it resolves to the drug's id and results report
+         * the drug's own name.
+         */
+        public Builder addSynonym(String synonym, String drug) {
+            synonyms.put(key(synonym), key(drug));
+            return this;
+        }
+
+        /**
+         * Each side is a drug name or "class:" followed by a class name. Drugs named in
+         * a rule are added to the formulary if missing.
+         */
+        public Builder addRule(String a, String b, Severity severity, String description) {
+            for (String side : new String[]{a, b}) {
+                if (!key(side).startsWith(CLASS_PREFIX)) addDrug(side);
+            }
+            rules.add(new String[]{key(a), key(b), description});
+            severities.add(severity);
+            return this;
+        }
+
+        public InteractionChecker build() {
+            String[] names = drugClasses.keySet().toArray(new String[0]);
+            Map<String, Integer> ids = new HashMap<>();
+            Map<String, List<Integer>> members = new HashMap<>();
+            for (int id = 0; id < names.length; id++) {
+                ids.put(names[id], id);
+                for (String c : drugClasses.get(names[id])) {
+                    List<Integer> list = members.get(c);
+                    if (list == null) {
+                        list = new ArrayList<>();
+                        members.put(c, list);
+                    }
+                    list.add(id);
+                }
+            }
+            for (Map.Entry<String, String> synonym : synonyms.entrySet()) {
+                Integer id = ids.get(synonym.getValue());
+                if (id != null && !ids.containsKey(synonym.getKey())) ids.put(synonym.getKey(), id);
+            }
+
+            // Pair -> rule; a later rule for the same pair wins only if more severe
+            Map<Long, Integer> pairRules = new HashMap<>();
+            for (int r = 0; r < rules.size(); r++) {
+                for (int a : expand(rules.get(r)[0], ids, members)) {
+                    for (int b : expand(rules.get(r)[1], ids, members)) {
+                        if (a == b) continue;
+                        for (long pair : new long[]{(long) a << 32 | b, (long) b << 32 | a}) {
+                            Integer existing = pairRules.get(pair);
+                            if (existing == null || severities.get(r).compareTo(severities.get(existing)) > 0) {
+                                pairRules.put(pair, r);
+                            }
+                        }
+                    }
+                }
+            }
+
+            long[] pairs = new long[pairRules.size()];
+            int i = 0;
+            for (Long pair : pairRules.keySet()) pairs[i++] = pair;
+            Arrays.sort(pairs);
+
+            int[] counts = new int[names.length];
+            for (long pair : pairs) counts[(int) (pair >>> 32)]++;
+            int[][] partnerLists = new int[names.length][];
+            int[][] ruleLists = new int[names.length][];
+            for (int d = 0; d < names.length; d++) {
+                partnerLists[d] = new int[counts[d]];
+                ruleLists[d] = new int[counts[d]];
+                counts[d] = 0;
+            }
+            for (long pair : pairs) {
+                int a = (int) (pair >>> 32), b = (int) pair;
+                partnerLists[a][counts[a]] = b;
+                ruleLists[a][counts[a]] = pairRules.get(pair);
+                counts[a]++;
+            }
+
+            Severity[] ruleSeverity = severities.toArray(new Severity[0]);
+            String[] ruleDescription = new String[rules.size()];
+            for (int r = 0; r < rules.size(); r++) ruleDescription[r] = rules.get(r)[2];
+            return new InteractionChecker(names, ids, partnerLists, ruleLists, ruleSeverity, ruleDescription);
+        }
+
+        private static List<Integer> expand(String side, Map<String, Integer> ids, Map<String, List<Integer>> members) {
+            if (side.startsWith(CLASS_PREFIX)) {
+                List<Integer> list = members.get(side.substring(CLASS_PREFIX.length()));
+                return list != null ? list : Collections.<Integer>emptyList();
+            }
+            Integer id = ids.get(side);
+            return id != null ? Collections.singletonList(id) : Collections.<Integer>emptyList();
+        }
+
+        private static String key(String name) {
+            return name.trim().toLowerCase(Locale.ROOT);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.aiprescriptionreader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Rebuilds reading rows from recognized line boxes. OCR engines tend to return each
+ * table cell or column as its own block, so a drug name, its strength and its schedule
+ * printed side by side come back as separate "lines". Here lines whose vertical
+ * extents overlap are put back into one row, ordered left to right.
+ *
+ * Both passes are sort-and-sweep: rows by sorting on vertical centre and sweeping a
+ * band, columns by sorting horizontal extents and merging overlaps. O(n log n) in the
+ * number of lines; a line is only compared with the few cells of the row being built.
+ */
+public class LayoutEngine {
+
+    // Share of the shorter height two lines must overlap by to sit in one row
+    static final float ROW_OVERLAP = 0.5f;
+
+    public static class Row {
+        // Left to right
+        public final List<RecognizedText.Line> cells;
+        // Column index of each cell
+        public final int[] columns;
+        public final int top, bottom;
+
+        Row(List<RecognizedText.Line> cells, int[] columns, int top, int bottom) {
+            this.cells = Collections.unmodifiableList(cells);
+            this.columns = columns;
+            this.top = top;
+            this.bottom = bottom;
+        }
+
+        public int height() {
+            return bottom - top;
+        }
+
+        /**
+         * Cell texts joined with single spaces.
+         */
+        public String text() {
+            StringBuilder sb = new StringBuilder();
+            for (RecognizedText.Line cell : cells) {
+                if (sb.length() > 0) sb.append(' ');
+                sb.append(cell.text);
+            }
+            return sb.toString();
+        }
+    }
+
+    private static final Comparator<RecognizedText.Line> BY_CENTER_Y = new Comparator<RecognizedText.Line>() {
+        @Override
+        public int compare(RecognizedText.Line a, RecognizedText.Line b) {
+            return Integer.compare(a.top + a.bottom, b.top + b.bottom);
+        }
+    };
+
+    private static final Comparator<RecognizedText.Line> BY_LEFT = new Comparator<RecognizedText.Line>() {
+        @Override
+        public int compare(RecognizedText.Line a, RecognizedText.Line b) {
+            return Integer.compare(a.left, b.left);
+        }
+    };
+
+    private LayoutEngine() {
+    }
+
+    /**
+     * Rows top to bottom. Lines without geometry keep their engine order, one per row.
+     */
+    public static List<Row> rows(RecognizedText text) {
+        List<RecognizedText.Line> placed = new ArrayList<>();
+        List<RecognizedText.Line> unplaced = new ArrayList<>();
+        for (RecognizedText.Line line : text.getLines()) {
+            if (line.text.trim().isEmpty()) continue;
+            if (line.height() > 0 && line.width() > 0) placed.add(line);
+            else unplaced.add(line);
+        }
+
+        int[] columnStarts = columnStarts(placed);
+        Collections.sort(placed, BY_CENTER_Y);
+
+        List<Row> rows = new ArrayList<>();
+        List<RecognizedText.Line> current = new ArrayList<>();
+        int bandTop = 0, bandBottom = 0;
+        for (RecognizedText.Line line : placed) {
+            if (!current.isEmpty() && !joinsBand(line, bandTop, bandBottom, current)) {
+                rows.add(toRow(current, columnStarts));
+                current = new ArrayList<>();
+            }
+            if (current.isEmpty()) {
+                bandTop = line.top;
+                bandBottom = line.bottom;
+            }
+            current.add(line);
+        }
+        if (!current.isEmpty()) rows.add(toRow(current, columnStarts));
+
+        for (RecognizedText.Line line : unplaced) {
+            List<RecognizedText.Line> single = new ArrayList<>();
+            single.add(line);
+            rows.add(new Row(single, new int[]{0}, line.top, line.bottom));
+        }
+        return rows;
+    }
+
+    /**
+     * The band is the first line of the row, so a slight slope across a wide row does
+     * not let the band drift into the next one.
+     */
+    private static boolean joinsBand(RecognizedText.Line line, int bandTop, int bandBottom,
+                                     List<RecognizedText.Line> row) {
+        int overlap = Math.min(line.bottom, bandBottom) - Math.max(line.top, bandTop);
+        int shorter = Math.min(line.height(), bandBottom - bandTop);
+        if (overlap < shorter * ROW_OVERLAP) return false;
+
+        // Two lines stacked in the same column are separate rows however close they are
+        for (RecognizedText.Line cell : row) {
+            if (Math.min(line.right, cell.right) - Math.max(line.left, cell.left) > 0) return false;
+        }
+        return true;
+    }
+
+    private static Row toRow(List<RecognizedText.Line> cells, int[] columnStarts) {
+        Collections.sort(cells, BY_LEFT);
+        int[] columns = new int[cells.size()];
+        int top = Integer.MAX_VALUE, bottom = Integer.MIN_VALUE;
+        for (int i = 0; i < cells.size(); i++) {
+            RecognizedText.Line cell = cells.get(i);
+            columns[i] = columnOf(columnStarts, cell.left);
+            top = Math.min(top, cell.top);
+            bottom = Math.max(bottom, cell.bottom);
+        }
+        return new Row(cells, columns, top, bottom);
+    }
+
+    /**
+     * Left edges of the page's columns: horizontal extents sorted by left edge and
+     * merged where they overlap, leaving one span per column with gutters between.
+     */
+    static int[] columnStarts(List<RecognizedText.Line> lines) {
+        if (lines.isEmpty()) return new int[]{0};
+        List<RecognizedText.Line> sorted = new ArrayList<>(lines);
+        Collections.sort(sorted, BY_LEFT);
+
+        int[] starts = new int[sorted.size()];
+        int count = 0;
+        int spanEnd = Integer.MIN_VALUE;
+        for (RecognizedText.Line line : sorted) {
+            if (line.left >= spanEnd) {
+                starts[count++] = line.left;
+            }
+            spanEnd = Math.max(spanEnd, line.right);
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    private static int columnOf(int[] columnStarts, int left) {
+        int index = Arrays.binarySearch(columnStarts, left);
+        return index >= 0 ? index : Math.max(0, -index - 2);
+    }
+}
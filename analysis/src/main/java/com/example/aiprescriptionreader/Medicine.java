@@ -0,0 +1,68 @@
+package com.example.aiprescriptionreader;
+
+/**
+ * A medicine recognized in prescription text. Dosage, frequency and duration are
+ * null when the line did not state them.
+ */
+public class Medicine {
+
+    private final String name;
+    private final String dosage, frequency, duration;
+    // Offsets of the matched drug name within the analyzed text
+    private final int start, end;
+    // 1.0 for an exact formulary match, lower for fuzzy ones
+    private final float score;
+
+    public Medicine(String name, String dosage, String frequency, String duration,
+                    int start, int end, float score) {
+        this.name = name;
+        this.dosage = dosage;
+        this.frequency = frequency;
+        this.duration = duration;
+        this.start = start;
+        this.end = end;
+        this.score = score;
+    }
+
+    Medicine shift(int offset) {
+        return offset == 0 ? this
+                : new Medicine(name, dosage, frequency, duration, start + offset, end + offset, score);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDosage() {
+        return dosage;
+    }
+
+    public String getFrequency() {
+        return frequency;
+    }
+
+    public String getDuration() {
+        return duration;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+    public boolean isFuzzyMatch() {
+        return score < 1f;
+    }
+
+    @Override
+    public String toString() {
+        return name + " [" + start + "," + end + ") " + dosage + " / " + frequency + " / " + duration;
+    }
+}
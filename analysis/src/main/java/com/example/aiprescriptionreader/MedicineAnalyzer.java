@@ -0,0 +1,300 @@
+package com.example.aiprescriptionreader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+public class MedicineAnalyzer {
+
+    public static String analyzePrescription(String text) {
+        if (text == null || text.isEmpty()) {
+            return "No text to analyze";
+        }
+        return AnalysisRenderer.render(analyze(text));
+    }
+
+    public static PrescriptionAnalysis analyze(String text) {
+        AnalysisSession session = new AnalysisSession(null);
+        session.append(text);
+        return session.finish();
+    }
+
+    /**
+     * Analyzes recognized text by layout rows rather than raw lines, so an item whose
+     * name, strength and schedule sit in separate columns is read as one line. A row
+     * with only schedule details and no drug continues the item above it.
+     */
+    public static PrescriptionAnalysis analyze(RecognizedText text) {
+        return analyze(text, null);
+    }
+
+    /**
+     * As {@link #analyze(RecognizedText)}, reporting each medicine to the listener as
+     * soon as its row is read.
+     */
+    public static PrescriptionAnalysis analyze(RecognizedText text, AnalysisSession.Listener listener) {
+        DrugIndex index = drugIndex;
+        PrescriptionLexer lexer = new PrescriptionLexer("");
+        AnalysisSession session = new AnalysisSession(listener);
+
+        // Drugs are matched once per row. A record starts with its drug row, so those
+        // matches hold for the whole record and only the schedule is lexed again.
+        StringBuilder record = new StringBuilder();
+        List<DrugMatcher.Match> recordDrugs = Collections.emptyList();
+        int recordBottom = 0, recordHeight = 0;
+        for (LayoutEngine.Row row : LayoutEngine.rows(text)) {
+            String line = row.text();
+            List<DrugMatcher.Match> drugs = findDrugs(index, line);
+            boolean continues = !recordDrugs.isEmpty() && drugs.isEmpty()
+                    && row.top - recordBottom <= recordHeight * 3 / 2
+                    && hasScheduleToken(lexer, line);
+            if (continues) {
+                record.append(' ').append(line);
+            } else {
+                flushRecord(session, lexer, record, recordDrugs);
+                record.append(line);
+                recordDrugs = drugs;
+                recordHeight = Math.max(1, row.height());
+            }
+            recordBottom = row.bottom;
+        }
+        flushRecord(session, lexer, record, recordDrugs);
+        return session.finish();
+    }
+
+    private static void flushRecord(AnalysisSession session, PrescriptionLexer lexer, StringBuilder record,
+                                    List<DrugMatcher.Match> drugs) {
+        if (record.length() == 0) return;
+        String line = record.toString();
+        session.appendLine(line, buildMedicine(lexer, line, drugs));
+        record.setLength(0);
+    }
+
+    private static boolean hasScheduleToken(PrescriptionLexer lexer, String line) {
+        lexer.reset(line);
+        return !lexer.tokenize(0, line.length(), Collections.<DrugMatcher.Match>emptyList()).isEmpty();
+    }
+
+    private static final String[] DEFAULT_MEDICINES = {
+            "paracetamol", "ibuprofen", "aspirin", "amoxicillin",
+            "azithromycin", "metformin", "insulin", "atorvastatin",
+            "losartan", "amlodipine", "omeprazole", "levothyroxine"
+    };
+
+    private static final int DEFAULT_FUZZY_DISTANCE = 2;
+    // Shorter tokens are too likely to land within a couple of edits of some drug
+    private static final int MIN_FUZZY_LENGTH = 5;
+
+    private static volatile DrugIndex drugIndex =
+            new DrugIndex(Arrays.asList(DEFAULT_MEDICINES), DEFAULT_FUZZY_DISTANCE);
+
+    /**
+     * Replaces the built-in drug list with a formulary (one name per line).
+     */
+    public static void loadFormulary(InputStream in) throws IOException {
+        setFormulary(DrugMatcher.readNames(in));
+    }
+
+    public static void setFormulary(Collection<String> drugNames) {
+        setFormulary(drugNames, DEFAULT_FUZZY_DISTANCE);
+    }
+
+    /**
+     * @param fuzzyDistance maximum edits tolerated when matching OCR-mangled names, 0 disables it
+     */
+    public static void setFormulary(Collection<String> drugNames, int fuzzyDistance) {
+        drugIndex = new DrugIndex(drugNames, fuzzyDistance);
+    }
+
+    /**
+     * Identifies the current drug list and fuzzy distance, so results cached under one
+     * formulary are not served under another.
+     */
+    public static String formularyVersion() {
+        return Integer.toHexString(drugIndex.version);
+    }
+
+    static List<Medicine> findMedicines(String text) {
+        return analyze(text).getMedicines();
+    }
+
+    static DrugIndex currentDrugIndex() {
+        return drugIndex;
+    }
+
+    /**
+     * Analyzes one line. Returns null when no drug is found in it; spans in the
+     * returned medicine are relative to the line.
+     */
+    static Medicine analyzeLine(DrugIndex index, PrescriptionLexer lexer, String line) {
+        return buildMedicine(lexer, line, findDrugs(index, line));
+    }
+
+    /**
+     * Exact matches in the line, or else the closest fuzzy one, in order of start.
+     */
+    static List<DrugMatcher.Match> findDrugs(DrugIndex index, String line) {
+        List<DrugMatcher.Match> drugs = index.matcher.findAll(line);
+        if (drugs.isEmpty() && index.fuzzy != null) {
+            DrugMatcher.Match fuzzyMatch = findFuzzy(index.fuzzy, line, 0, line.length());
+            if (fuzzyMatch != null) drugs.add(fuzzyMatch);
+        }
+        Collections.sort(drugs, BY_START);
+        return drugs;
+    }
+
+    /**
+     * The medicine for a line whose drugs were found by {@link #findDrugs}, or null if
+     * there are none.
+     */
+    static Medicine buildMedicine(PrescriptionLexer lexer, String line, List<DrugMatcher.Match> drugs) {
+        if (drugs.isEmpty()) return null;
+        lexer.reset(line);
+        return toMedicine(drugs.get(0), lexer.tokenize(0, line.length(), drugs));
+    }
+
+    /**
+     * Looks up every word of the line, and every pair of adjacent words to undo OCR
+     * splits like "ator vastatin", returning the closest drug if any is in range.
+     */
+    private static DrugMatcher.Match findFuzzy(FuzzyDrugIndex fuzzy, String text, int lineStart, int lineEnd) {
+        FuzzyDrugIndex.Candidate best = null;
+        int bestStart = 0, bestEnd = 0;
+
+        int prevStart = -1, prevEnd = -1;
+        int i = lineStart;
+        while (i < lineEnd) {
+            if (!Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            boolean hasLetter = false;
+            while (i < lineEnd && Character.isLetterOrDigit(text.charAt(i))) {
+                hasLetter |= Character.isLetter(text.charAt(i));
+                i++;
+            }
+            if (!hasLetter) {
+                prevStart = -1;
+                continue;
+            }
+
+            FuzzyDrugIndex.Candidate c = lookupFuzzy(fuzzy, text.substring(start, i));
+            if (c != null && isBetter(c, best)) {
+                best = c;
+                bestStart = start;
+                bestEnd = i;
+            }
+            if (prevStart >= 0 && isWordGap(text, prevEnd, start)) {
+                // Looked up as written; normalization drops the gap
+                c = lookupFuzzy(fuzzy, text.substring(prevStart, i));
+                if (c != null && isBetter(c, best)) {
+                    best = c;
+                    bestStart = prevStart;
+                    bestEnd = i;
+                }
+            }
+            prevStart = start;
+            prevEnd = i;
+        }
+
+        return best != null ? new DrugMatcher.Match(-1, best.name, bestStart, bestEnd, best.score) : null;
+    }
+
+    private static FuzzyDrugIndex.Candidate lookupFuzzy(FuzzyDrugIndex fuzzy, String word) {
+        if (word.length() < MIN_FUZZY_LENGTH) return null;
+        int distance = word.length() < 8 ? 1 : fuzzy.getMaxDistance();
+        return fuzzy.best(word, distance);
+    }
+
+    private static boolean isBetter(FuzzyDrugIndex.Candidate c, FuzzyDrugIndex.Candidate best) {
+        return best == null || c.distance < best.distance
+                || (c.distance == best.distance && c.score > best.score);
+    }
+
+    private static boolean isWordGap(String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c != ' ' && c != '-') return false;
+        }
+        return to - from <= 2;
+    }
+
+    private static final Comparator<DrugMatcher.Match> BY_START = new Comparator<DrugMatcher.Match>() {
+        @Override
+        public int compare(DrugMatcher.Match a, DrugMatcher.Match b) {
+            return a.start != b.start ? Integer.compare(a.start, b.start) : Integer.compare(b.end, a.end);
+        }
+    };
+
+    private static Medicine toMedicine(DrugMatcher.Match match, List<PrescriptionLexer.Token> tokens) {
+        PrescriptionLexer.Token drug = null, dosage = null, frequency = null, duration = null;
+        for (PrescriptionLexer.Token token : tokens) {
+            switch (token.type) {
+                case DRUG:
+                    if (drug == null) drug = token;
+                    break;
+                case QUANTITY:
+                    if (dosage == null) dosage = token;
+                    break;
+                case FREQUENCY:
+                    if (frequency == null) frequency = token;
+                    break;
+                case DURATION:
+                    if (duration == null) duration = token;
+                    break;
+            }
+        }
+
+        // Fuzzy hits show the formulary spelling, exact hits the text as written
+        String name = match.drugIndex < 0 ? match.drug : drug.text();
+        return new Medicine(name, textOf(dosage), textOf(frequency), textOf(duration),
+                drug.start, drug.end, match.score);
+    }
+
+    private static String textOf(PrescriptionLexer.Token token) {
+        return token != null ? token.text() : null;
+    }
+
+    /**
+     * Adds the dosage forms mentioned in the (lowercased) text to forms.
+     */
+    static void findDosageForms(String lowerText, Set<DosageForm> forms) {
+        if (lowerText.contains("tablet") || lowerText.contains("tab")) {
+            forms.add(DosageForm.TABLET);
+        }
+        if (lowerText.contains("capsule") || lowerText.contains("cap")) {
+            forms.add(DosageForm.CAPSULE);
+        }
+        if (lowerText.contains("syrup") || lowerText.contains("suspension")) {
+            forms.add(DosageForm.LIQUID);
+        }
+        if (lowerText.contains("injection") || lowerText.contains("inj")) {
+            forms.add(DosageForm.INJECTION);
+        }
+        if (lowerText.contains("ointment") || lowerText.contains("cream")) {
+            forms.add(DosageForm.TOPICAL);
+        }
+    }
+
+    static class DrugIndex {
+        final DrugMatcher matcher;
+        final FuzzyDrugIndex fuzzy;
+
+        final int version;
+
+        DrugIndex(Collection<String> drugNames, int fuzzyDistance) {
+            int hash = fuzzyDistance;
+            for (String name : drugNames) hash = 31 * hash + name.hashCode();
+            version = hash;
+            matcher = DrugMatcher.fromNames(drugNames);
+            fuzzy = fuzzyDistance > 0 ? new FuzzyDrugIndex(drugNames, fuzzyDistance) : null;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.aiprescriptionreader;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Structured result of analyzing prescription text. Render it with {@link AnalysisRenderer}.
+ */
+public class PrescriptionAnalysis {
+
+    private final List<Medicine> medicines;
+    private final Set<DosageForm> dosageForms;
+    private final int textLength;
+
+    PrescriptionAnalysis(List<Medicine> medicines, Set<DosageForm> dosageForms, int textLength) {
+        this.medicines = Collections.unmodifiableList(medicines);
+        this.dosageForms = Collections.unmodifiableSet(
+                dosageForms.isEmpty() ? EnumSet.noneOf(DosageForm.class) : EnumSet.copyOf(dosageForms));
+        this.textLength = textLength;
+    }
+
+    public List<Medicine> getMedicines() {
+        return medicines;
+    }
+
+    /**
+     * Dosage forms mentioned anywhere in the text; empty for a general prescription.
+     */
+    public Set<DosageForm> getDosageForms() {
+        return dosageForms;
+    }
+
+    public int getTextLength() {
+        return textLength;
+    }
+
+    public boolean hasMedicines() {
+        return !medicines.isEmpty();
+    }
+}
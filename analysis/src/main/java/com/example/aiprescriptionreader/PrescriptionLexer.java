@@ -0,0 +1,109 @@
+package com.example.aiprescriptionreader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits a prescription line into typed tokens in one scan. The regex is compiled once;
+ * drug names come from the {@link DrugMatcher} spans already found for the text.
+ */
+public class PrescriptionLexer {
+
+    public enum TokenType { DRUG, QUANTITY, FREQUENCY, DURATION }
+
+    private static final String NUMBER = "\\d+(?:\\.\\d+)?";
+
+    // Alternatives are tried left to right at each position, so the more specific
+    // schedule and duration forms win over a bare quantity
+    private static final Pattern TOKENS = Pattern.compile(
+            // 1: duration
+            "(\\bfor\\s+" + NUMBER + "\\s*(?:days?|weeks?|months?)\\b"
+                    + "|(?:\\bx|×)\\s*" + NUMBER + "\\s*(?:days?|weeks?|months?)\\b"
+                    + "|\\b" + NUMBER + "\\s*(?:days?|weeks?)\\s+course\\b)"
+                    // 2: frequency
+                    + "|(\\b\\d\\s*[-+]\\s*\\d\\s*[-+]\\s*\\d(?:\\s*[-+]\\s*\\d)?(?![\\d.])"
+                    + "|\\b\\d+\\s+times?\\s+(?:a|per)\\s+day\\b"
+                    + "|\\b(?:once|twice|thrice)\\s+(?:a\\s+)?daily\\b"
+                    + "|\\b(?:once|twice|thrice)\\s+a\\s+day\\b"
+                    + "|\\bevery\\s+\\d+\\s*(?:hours?|hrs?)\\b"
+                    + "|\\b(?:od|bd|bid|tds|tid|qid|qds|hs|prn)\\b)"
+                    // 3: quantity with unit
+                    + "|(\\b" + NUMBER + "\\s*(?:mcg|mg|g|ml|iu|units?|tablets?|tabs?|capsules?|caps?|puffs?|drops?)\\b)",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final TokenType[] GROUP_TYPES = {
+            null, TokenType.DURATION, TokenType.FREQUENCY, TokenType.QUANTITY
+    };
+
+    private CharSequence text;
+    private final Matcher matcher;
+
+    public PrescriptionLexer(CharSequence text) {
+        this.text = text;
+        this.matcher = TOKENS.matcher(text);
+        // Let \b look past the region edges so line boundaries behave like the full text
+        matcher.useTransparentBounds(true);
+    }
+
+    /**
+     * Points the lexer at new text, reusing the compiled matcher.
+     */
+    public void reset(CharSequence text) {
+        this.text = text;
+        matcher.reset(text);
+    }
+
+    /**
+     * Tokenizes text[lineStart, lineEnd). Drug matches must be in text coordinates and
+     * ordered by start; those outside the line are ignored.
+     */
+    public List<Token> tokenize(int lineStart, int lineEnd, List<DrugMatcher.Match> drugs) {
+        List<Token> tokens = new ArrayList<>();
+        int d = 0;
+        matcher.region(lineStart, lineEnd);
+        while (matcher.find()) {
+            for (int g = 1; g < GROUP_TYPES.length; g++) {
+                if (matcher.start(g) < 0) continue;
+                while (d < drugs.size() && drugs.get(d).start < matcher.start(g)) {
+                    addDrug(tokens, drugs.get(d++), lineStart, lineEnd);
+                }
+                tokens.add(new Token(GROUP_TYPES[g], matcher.start(g), matcher.end(g), text));
+                break;
+            }
+        }
+        while (d < drugs.size()) {
+            addDrug(tokens, drugs.get(d++), lineStart, lineEnd);
+        }
+        return tokens;
+    }
+
+    private void addDrug(List<Token> tokens, DrugMatcher.Match drug, int lineStart, int lineEnd) {
+        if (drug.start >= lineStart && drug.end <= lineEnd) {
+            tokens.add(new Token(TokenType.DRUG, drug.start, drug.end, text));
+        }
+    }
+
+    public static class Token {
+        public final TokenType type;
+        public final int start, end;
+        private final CharSequence source;
+
+        Token(TokenType type, int start, int end, CharSequence source) {
+            this.type = type;
+            this.start = start;
+            this.end = end;
+            this.source = source;
+        }
+
+        public String text() {
+            return source.subSequence(start, end).toString();
+        }
+
+        @Override
+        public String toString() {
+            return type + "(" + text() + ")";
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.aiprescriptionreader;
+
+/**
+ * A text recognizer behind the scan pipeline. Engines return {@link RecognizedText},
+ * so everything after recognition is the same whichever engine ran. Implementations
+ * block and may be called from several worker threads at once.
+ */
+public interface RecognitionEngine {
+
+    /**
+     * The image handed to an engine. Engines that need pixels in a particular form
+     * (an Android Bitmap, say) know the concrete type they are given.
+     */
+    interface Page {
+        int width();
+        int height();
+        // Clockwise rotation that makes the page upright
+        int rotationDegrees();
+        // Stable identity of the image content, e.g. a content hash
+        String key();
+    }
+
+    String name();
+
+    /**
+     * The model and input this engine recognizes with. Two engines with the same pass
+     * would give the same text, so a chain never runs a pass twice on one page. An
+     * engine that sometimes falls back to another engine's pass says so on the result
+     * ({@link RecognizedText#getPass()}).
+     */
+    default String pass() {
+        return name();
+    }
+
+    RecognizedText recognize(Page page) throws Exception;
+}
@@ -0,0 +1,101 @@
+package com.example.aiprescriptionreader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Scores recognized text from the engine's own per-element confidences, and picks out
+ * the lines that are worth recognizing again at a higher resolution.
+ */
+public class RecognitionQuality {
+
+    static final float WEAK_LINE_CONFIDENCE = 0.7f;
+    static final float MIN_MEAN_ELEMENT_LENGTH = 3f;
+
+    private RecognitionQuality() {
+    }
+
+    /**
+     * Mean element confidence weighted by element length, as a percentage. Falls back
+     * to a text-length heuristic when the engine reports no confidences.
+     */
+    public static int confidencePercent(RecognizedText text) {
+        double weighted = 0;
+        int chars = 0;
+        for (RecognizedText.Line line : text.getLines()) {
+            for (RecognizedText.Element element : line.elements) {
+                if (element.confidence < 0) continue;
+                weighted += element.confidence * element.text.length();
+                chars += element.text.length();
+            }
+        }
+        if (chars > 0) {
+            return (int) Math.round(weighted / chars * 100);
+        }
+
+        int textLength = text.getText().length();
+        if (textLength > 100) return 85;
+        else if (textLength > 50) return 80;
+        else if (textLength > 20) return 75;
+        else if (textLength > 10) return 70;
+        else return 65;
+    }
+
+    /**
+     * Confidence of one line: the engine's line confidence, else the mean over its
+     * elements, else -1.
+     */
+    static float lineConfidence(RecognizedText.Line line) {
+        if (line.confidence >= 0) return line.confidence;
+        float sum = 0;
+        int count = 0;
+        for (RecognizedText.Element element : line.elements) {
+            if (element.confidence < 0) continue;
+            sum += element.confidence;
+            count++;
+        }
+        return count > 0 ? sum / count : -1;
+    }
+
+    /**
+     * Indices of lines that look misread: low confidence, broken into very short
+     * fragments, or a dose with no recognizable drug name next to it. Weakest first.
+     */
+    public static List<Integer> weakLines(RecognizedText text, DrugMatcher matcher) {
+        List<RecognizedText.Line> lines = text.getLines();
+        final float[] scores = new float[lines.size()];
+        List<Integer> weak = new ArrayList<>();
+        PrescriptionLexer lexer = new PrescriptionLexer("");
+        List<DrugMatcher.Match> noDrugs = Collections.emptyList();
+
+        for (int i = 0; i < lines.size(); i++) {
+            RecognizedText.Line line = lines.get(i);
+            float confidence = lineConfidence(line);
+            scores[i] = confidence >= 0 ? confidence : 1f;
+            boolean isWeak = confidence >= 0 && confidence < WEAK_LINE_CONFIDENCE;
+
+            if (!isWeak && line.elements.size() >= 2) {
+                int chars = 0;
+                for (RecognizedText.Element element : line.elements) chars += element.text.length();
+                isWeak = (float) chars / line.elements.size() < MIN_MEAN_ELEMENT_LENGTH;
+            }
+
+            if (!isWeak && matcher.findAll(line.text).isEmpty()) {
+                lexer.reset(line.text);
+                for (PrescriptionLexer.Token token : lexer.tokenize(0, line.text.length(), noDrugs)) {
+                    if (token.type == PrescriptionLexer.TokenType.QUANTITY) {
+                        isWeak = true;
+                        // Rank above merely low-confidence lines: the drug name is what matters
+                        scores[i] = Math.min(scores[i], 0f);
+                        break;
+                    }
+                }
+            }
+            if (isWeak) weak.add(i);
+        }
+
+        Collections.sort(weak, (a, b) -> Float.compare(scores[a], scores[b]));
+        return weak;
+    }
+}
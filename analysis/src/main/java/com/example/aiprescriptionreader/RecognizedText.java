@@ -0,0 +1,107 @@
+package com.example.aiprescriptionreader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Recognized text with geometry, independent of the OCR engine that produced it.
+ * Boxes are in pixels of the upright image; confidence is in [0, 1], or -1 when
+ * the engine does not report one.
+ */
+public class RecognizedText {
+
+    public static class Element {
+        public final String text;
+        public final int left, top, right, bottom;
+        public final float confidence;
+
+        public Element(String text, int left, int top, int right, int bottom, float confidence) {
+            this.text = text;
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+            this.confidence = confidence;
+        }
+    }
+
+    public static class Line {
+        public final String text;
+        public final int block;
+        public final int left, top, right, bottom;
+        public final float confidence;
+        public final List<Element> elements;
+
+        public Line(String text, int block, int left, int top, int right, int bottom,
+                    float confidence, List<Element> elements) {
+            this.text = text;
+            this.block = block;
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+            this.confidence = confidence;
+            this.elements = Collections.unmodifiableList(new ArrayList<>(elements));
+        }
+
+        public int width() {
+            return right - left;
+        }
+
+        public int height() {
+            return bottom - top;
+        }
+    }
+
+    private final String text;
+    private final List<Line> lines;
+    private final String pass;
+
+    public RecognizedText(String text, List<Line> lines) {
+        this(text, lines, null);
+    }
+
+    /**
+     * @param pass the {@link RecognitionEngine#pass()} that produced the text, when it is
+     *             not the usual one of the engine that returned it
+     */
+    public RecognizedText(String text, List<Line> lines, String pass) {
+        this.text = text;
+        this.lines = Collections.unmodifiableList(new ArrayList<>(lines));
+        this.pass = pass;
+    }
+
+    /**
+     * The same text marked as produced by the given pass.
+     */
+    public RecognizedText withPass(String pass) {
+        return new RecognizedText(text, lines, pass);
+    }
+
+    /**
+     * The pass that produced this text if the engine reported one, else null.
+     */
+    public String getPass() {
+        return pass;
+    }
+
+    /**
+     * Full text in engine reading order, lines separated by newlines.
+     */
+    public String getText() {
+        return text;
+    }
+
+    public List<Line> getLines() {
+        return lines;
+    }
+
+    public int getBlockCount() {
+        int blocks = 0;
+        for (Line line : lines) {
+            blocks = Math.max(blocks, line.block + 1);
+        }
+        return blocks;
+    }
+}
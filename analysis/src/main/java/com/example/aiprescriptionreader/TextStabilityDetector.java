@@ -0,0 +1,84 @@
+package com.example.aiprescriptionreader;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Decides when live-recognized text has stopped changing. Each frame's text is reduced
+ * to a set of word tokens; once enough consecutive frames overlap closely with the
+ * previous one, the view is considered steady enough to capture.
+ */
+public class TextStabilityDetector {
+
+    private final int requiredFrames;
+    private final float minSimilarity;
+    private final int minWords;
+
+    private Set<String> previous;
+    private int stableFrames;
+
+    public TextStabilityDetector(int requiredFrames, float minSimilarity, int minWords) {
+        this.requiredFrames = requiredFrames;
+        this.minSimilarity = minSimilarity;
+        this.minWords = minWords;
+    }
+
+    /**
+     * Feeds the text of the latest frame. Returns true once the text has been stable
+     * for the required number of consecutive frames.
+     */
+    public boolean onFrame(String text) {
+        Set<String> words = words(text);
+        if (words.size() < minWords) {
+            reset();
+            return false;
+        }
+
+        if (previous != null && similarity(previous, words) >= minSimilarity) {
+            stableFrames++;
+        } else {
+            stableFrames = 0;
+        }
+        previous = words;
+        return stableFrames >= requiredFrames;
+    }
+
+    public int getStableFrames() {
+        return stableFrames;
+    }
+
+    public void reset() {
+        previous = null;
+        stableFrames = 0;
+    }
+
+    static Set<String> words(String text) {
+        Set<String> words = new HashSet<>();
+        StringBuilder word = new StringBuilder();
+        String lower = text.toLowerCase(Locale.ROOT);
+        for (int i = 0; i <= lower.length(); i++) {
+            char c = i < lower.length() ? lower.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (word.length() > 0) {
+                // Single characters are mostly OCR noise at frame resolution
+                if (word.length() > 1) words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Jaccard similarity of two word sets.
+     */
+    static float similarity(Set<String> a, Set<String> b) {
+        if (a.isEmpty() && b.isEmpty()) return 1f;
+        int common = 0;
+        for (String w : a) {
+            if (b.contains(w)) common++;
+        }
+        return (float) common / (a.size() + b.size() - common);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.aiprescriptionreader;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AnalysisSessionTest {
+
+    @Test
+    public void reportsAMedicineOnceItsLineIsComplete() {
+        List<Medicine> reported = new ArrayList<>();
+        AnalysisSession session = new AnalysisSession(reported::add);
+
+        session.append("Amoxicillin 500mg 1-");
+        assertTrue(reported.isEmpty());
+        session.append("0-1\nIbuprofen");
+        assertEquals(1, reported.size());
+        assertEquals("1-0-1", reported.get(0).getFrequency());
+
+        PrescriptionAnalysis analysis = session.finish();
+        assertEquals(2, reported.size());
+        assertEquals(2, analysis.getMedicines().size());
+    }
+
+    @Test
+    public void spansPointIntoTheWholeText() {
+        String text = "Rx\nParacetamol 650mg\nMetformin 500mg bd";
+        AnalysisSession session = new AnalysisSession(null);
+        session.append(text.substring(0, 9));
+        session.append(text.substring(9));
+
+        for (Medicine medicine : session.finish().getMedicines()) {
+            assertEquals(medicine.getName(), text.substring(medicine.getStart(), medicine.getEnd()));
+        }
+        assertEquals(text.length(), session.finish().getTextLength());
+    }
+
+    @Test
+    public void snapshotLeavesThePartialLinePending() {
+        AnalysisSession session = new AnalysisSession(null);
+        session.appendLine("Aspirin 75mg od");
+        session.append("Losartan 50");
+
+        assertEquals(1, session.snapshot().getMedicines().size());
+        assertEquals(2, session.finish().getMedicines().size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsTextAfterFinish() {
+        AnalysisSession session = new AnalysisSession(null);
+        session.finish();
+        session.append("Insulin 10 units");
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.aiprescriptionreader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class CorpusRunnerTest {
+
+    private File corpus;
+
+    @Before
+    public void createCorpus() throws IOException {
+        corpus = File.createTempFile("corpus", "");
+        assertTrue(corpus.delete() && corpus.mkdir());
+    }
+
+    @After
+    public void deleteCorpus() {
+        delete(corpus);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) delete(child);
+        }
+        file.delete();
+    }
+
+    private File write(String path, String content) throws IOException {
+        File file = new File(corpus, path);
+        file.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(Charset.forName("UTF-8")));
+        }
+        return file;
+    }
+
+    @Test
+    public void countsAFileMatchingItsGoldenAsExact() throws IOException {
+        File text = write("a/scan.txt", "Paracetamol 500mg 1-0-1\nAmoxicilin 250mg tds x 5 days\n");
+        write("a/scan.golden", "paracetamol\t500mg\t1-0-1\t-\n# fuzzy\nAmoxicillin\t250mg\ttds\tx 5 days\n");
+        CorpusRunner.Tally tally = new CorpusRunner.Tally();
+
+        new CorpusRunner(corpus, null, false).process(text, tally);
+
+        assertEquals(1, tally.compared);
+        assertEquals(1, tally.exact);
+        assertEquals(2, tally.matched);
+        assertTrue(tally.mismatches.isEmpty());
+    }
+
+    @Test
+    public void reportsAMismatch() throws IOException {
+        File text = write("scan.txt", "Ibuprofen 400mg bd\n");
+        write("scan.golden", "ibuprofen\t400mg\ttds\t-\n");
+        CorpusRunner.Tally tally = new CorpusRunner.Tally();
+
+        new CorpusRunner(corpus, null, false).process(text, tally);
+
+        assertEquals(0, tally.exact);
+        assertEquals(0, tally.matched);
+        assertEquals(1, tally.mismatches.size());
+        assertEquals(0, tally.fileAccuracy(), 0);
+    }
+
+    @Test
+    public void writesGoldenFilesUnderTheGoldenDirectory() throws IOException {
+        File text = write("in/scan.txt", "Metformin 500mg bd\n");
+        File golden = new File(corpus, "golden");
+        CorpusRunner.Tally tally = new CorpusRunner.Tally();
+
+        new CorpusRunner(new File(corpus, "in"), golden, true).process(text, tally);
+
+        assertTrue(new File(golden, "scan.golden").isFile());
+        assertEquals(1, tally.predicted);
+        assertEquals(0, tally.compared);
+    }
+
+    @Test
+    public void countsEachExpectedRowOnce() {
+        assertEquals(1, CorpusRunner.countMatched(Collections.singletonList("a"), Arrays.asList("a", "a")));
+        assertEquals(2, CorpusRunner.countMatched(Arrays.asList("a", "b", "a"), Arrays.asList("a", "a", "c")));
+    }
+
+    @Test
+    public void failsTheGateWhenNothingWasCompared() {
+        CorpusRunner.Tally tally = new CorpusRunner.Tally();
+        tally.files = 3;
+        tally.missingGolden = 3;
+
+        assertNotNull(tally.gateFailure(90));
+        assertNull(tally.gateFailure(-1));
+    }
+
+    @Test
+    public void failsTheGateOnErrorsOrLowAccuracy() {
+        CorpusRunner.Tally tally = new CorpusRunner.Tally();
+        tally.compared = 4;
+        tally.exact = 3;
+
+        assertNull(tally.gateFailure(75));
+        assertNotNull(tally.gateFailure(80));
+        tally.errors = 1;
+        assertNotNull(tally.gateFailure(-1));
+    }
+
+    @Test
+    public void mergesTallies() {
+        CorpusRunner.Tally a = new CorpusRunner.Tally();
+        a.files = 2;
+        a.compared = 2;
+        a.exact = 1;
+        CorpusRunner.Tally b = new CorpusRunner.Tally();
+        b.files = 2;
+        b.compared = 2;
+        b.exact = 2;
+
+        a.merge(b);
+
+        assertEquals(4, a.files);
+        assertEquals(75, a.fileAccuracy(), 1e-9);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.aiprescriptionreader;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DrugMatcherTest {
+
+    @Test
+    public void reportsOverlappingMatches() {
+        DrugMatcher matcher = DrugMatcher.fromNames(Arrays.asList("he", "she", "his", "hers"));
+
+        List<DrugMatcher.Match> matches = matcher.findAll("ushers");
+
+        assertEquals("[she[1,4), he[2,4), hers[2,6)]", matches.toString());
+    }
+
+    @Test
+    public void matchesIgnoringCase() {
+        DrugMatcher matcher = DrugMatcher.fromNames(Arrays.asList(" Paracetamol ", "aspirin"));
+
+        List<DrugMatcher.Match> matches = matcher.findAll("Tab PARACETAMOL 500mg, Aspirin 75mg");
+
+        assertEquals(2, matches.size());
+        assertEquals("paracetamol", matches.get(0).drug);
+        assertEquals(4, matches.get(0).start);
+        assertEquals(15, matches.get(0).end);
+        assertEquals("aspirin", matches.get(1).drug);
+        assertEquals(1f, matches.get(1).score, 0f);
+    }
+
+    @Test
+    public void findsNothingInUnrelatedText() {
+        DrugMatcher matcher = DrugMatcher.fromNames(Arrays.asList("paracetamol", "ibuprofen"));
+
+        assertTrue(matcher.findAll("Take plenty of rest").isEmpty());
+        assertTrue(matcher.findAll("").isEmpty());
+    }
+
+    @Test
+    public void dropsDuplicateAndBlankNames() {
+        DrugMatcher matcher = DrugMatcher.fromNames(Arrays.asList("Insulin", "insulin", " ", null));
+
+        assertEquals(1, matcher.size());
+        assertEquals("insulin", matcher.getName(0));
+    }
+
+    @Test
+    public void readsOneNamePerLineSkippingComments() throws IOException {
+        String source = "# formulary\nparacetamol\n\n  ibuprofen  \n#aspirin\n";
+
+        List<String> names = DrugMatcher.readNames(
+                new ByteArrayInputStream(source.getBytes(Charset.forName("UTF-8"))));
+
+        assertEquals(Arrays.asList("paracetamol", "ibuprofen"), names);
+    }
+}
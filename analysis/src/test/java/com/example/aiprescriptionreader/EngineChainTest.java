@@ -0,0 +1,149 @@
+package com.example.aiprescriptionreader;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EngineChainTest {
+
+    private static final String KEY = "page-1";
+    private static final String TEXT = "Paracetamol 500mg 1-0-1\nAmoxicillin 250mg tds";
+
+    private static RecognitionEngine.Page page() {
+        return new RecognitionEngine.Page() {
+            @Override
+            public int width() {
+                return 1000;
+            }
+
+            @Override
+            public int height() {
+                return 1000;
+            }
+
+            @Override
+            public int rotationDegrees() {
+                return 0;
+            }
+
+            @Override
+            public String key() {
+                return KEY;
+            }
+        };
+    }
+
+    private static FakeRecognitionEngine engine(String name, float confidence) {
+        return new FakeRecognitionEngine(name).recordText(KEY, TEXT, confidence);
+    }
+
+    @Test
+    public void stopsAtAConfidentResult() throws Exception {
+        FakeRecognitionEngine fast = engine("fast", 0.95f);
+        FakeRecognitionEngine full = engine("full", 0.99f);
+        EngineChain chain = new EngineChain.Builder().add(fast, 100).add(full, 1000).build();
+
+        EngineChain.Result result = chain.recognize(page(), 5000);
+
+        assertEquals("fast", result.engine);
+        assertEquals(95, result.confidence);
+        assertEquals(1, result.attempts);
+        assertEquals(0, full.calls());
+    }
+
+    @Test
+    public void escalatesAWeakResultWithinTheBudget() throws Exception {
+        FakeRecognitionEngine fast = engine("fast", 0.4f);
+        FakeRecognitionEngine full = engine("full", 0.9f);
+        EngineChain chain = new EngineChain.Builder().add(fast, 100).add(full, 1000).build();
+
+        EngineChain.Result result = chain.recognize(page(), 5000);
+
+        assertEquals("full", result.engine);
+        assertEquals(90, result.confidence);
+        assertEquals(2, result.attempts);
+    }
+
+    @Test
+    public void keepsTheBetterResultWhenEscalationDoesWorse() throws Exception {
+        EngineChain chain = new EngineChain.Builder()
+                .add(engine("fast", 0.5f), 100)
+                .add(engine("full", 0.3f), 1000)
+                .build();
+
+        EngineChain.Result result = chain.recognize(page(), 5000);
+
+        assertEquals("fast", result.engine);
+        assertEquals(2, result.attempts);
+    }
+
+    @Test
+    public void doesNotEscalateBeyondTheBudget() throws Exception {
+        FakeRecognitionEngine full = engine("full", 0.9f);
+        EngineChain chain = new EngineChain.Builder().add(engine("fast", 0.4f), 100).add(full, 1000).build();
+
+        EngineChain.Result result = chain.recognize(page(), 500);
+
+        assertEquals("fast", result.engine);
+        assertEquals(0, full.calls());
+    }
+
+    @Test
+    public void runsTheFastestEngineWhenNoneFits() throws Exception {
+        FakeRecognitionEngine slow = engine("slow", 0.9f);
+        FakeRecognitionEngine slower = engine("slower", 0.9f);
+        EngineChain chain = new EngineChain.Builder().add(slower, 3000).add(slow, 2000).build();
+
+        EngineChain.Result result = chain.recognize(page(), 100);
+
+        assertEquals("slow", result.engine);
+        assertEquals(0, slower.calls());
+    }
+
+    @Test
+    public void learnsHowLongAnEngineTakes() throws Exception {
+        FakeRecognitionEngine fast = engine("fast", 0.95f);
+        EngineChain chain = new EngineChain.Builder().add(fast, 1000).build();
+
+        chain.recognize(page(), 5000);
+
+        assertTrue(chain.expectedMs(0) < 1000);
+    }
+
+    @Test
+    public void skipsAPassThatHasAlreadyRun() throws Exception {
+        FakeRecognitionEngine adaptive = new FakeRecognitionEngine("adaptive");
+        // Fell back to the full pass itself, as an adaptive reader does for a sparse page
+        adaptive.record(KEY, FakeRecognitionEngine.fromPlainText(TEXT, 0.4f).withPass("full"));
+        FakeRecognitionEngine full = engine("full", 0.4f);
+        EngineChain chain = new EngineChain.Builder().add(adaptive, 100).add(full, 1000).build();
+
+        EngineChain.Result result = chain.recognize(page(), 5000);
+
+        assertEquals(1, result.attempts);
+        assertEquals(0, full.calls());
+    }
+
+    @Test
+    public void skipsEnginesSharingAPass() throws Exception {
+        FakeRecognitionEngine first = engine("first", 0.4f);
+        FakeRecognitionEngine same = new FakeRecognitionEngine("same") {
+            @Override
+            public String pass() {
+                return "first";
+            }
+        }.recordText(KEY, TEXT, 0.9f);
+        FakeRecognitionEngine other = engine("other", 0.8f);
+        EngineChain chain = new EngineChain.Builder().add(first, 100).add(same, 200).add(other, 300).build();
+
+        EngineChain.Result result = chain.recognize(page(), 5000);
+
+        assertEquals("other", result.engine);
+        assertEquals(0, same.calls());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void needsAnEngine() {
+        new EngineChain.Builder().build();
+    }
+}
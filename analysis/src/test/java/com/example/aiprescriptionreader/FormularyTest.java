@@ -0,0 +1,124 @@
+package com.example.aiprescriptionreader;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class FormularyTest {
+
+    // Gradle runs tests from the module directory
+    private static final File SOURCE = new File("src/main/formulary/formulary.tsv");
+    private static final File ASSET = new File("../app/src/main/assets/formulary.rxf");
+
+    private static byte[] compile() throws IOException {
+        FormularyWriter writer = new FormularyWriter();
+        try (InputStream in = new FileInputStream(SOURCE)) {
+            writer.read(in);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(out);
+        return out.toByteArray();
+    }
+
+    private static List<String[]> entries(String kind) throws IOException {
+        List<String[]> entries = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(SOURCE), Formulary.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(kind + "\t")) entries.add(line.split("\t", -1));
+            }
+        }
+        return entries;
+    }
+
+    private static List<String> list(String field) {
+        List<String> values = new ArrayList<>();
+        for (String value : field.split(",")) {
+            if (!value.trim().isEmpty()) values.add(value.trim());
+        }
+        return values;
+    }
+
+    @Test
+    public void roundTripsEveryDrugInTheSource() throws IOException {
+        Formulary formulary = Formulary.wrap(ByteBuffer.wrap(compile()));
+        List<String[]> drugs = entries("drug");
+
+        assertEquals(drugs.size(), formulary.drugCount());
+        assertEquals(entries("rule").size(), formulary.ruleCount());
+        for (String[] fields : drugs) {
+            Formulary.Drug drug = formulary.lookup(fields[1]);
+            assertNotNull(fields[1], drug);
+            assertEquals(fields[1].toLowerCase(Locale.ROOT), drug.name);
+            assertEquals(list(fields[2].toLowerCase(Locale.ROOT)), drug.synonyms);
+            assertEquals(list(fields[3]), drug.strengths);
+            List<String> forms = new ArrayList<>();
+            for (DosageForm form : drug.forms) forms.add(form.name());
+            assertEquals(list(fields[4]), forms);
+            assertEquals(list(fields[5]), drug.classes);
+            for (String synonym : drug.synonyms) {
+                assertEquals(synonym, drug.id, formulary.find(synonym));
+            }
+        }
+    }
+
+    @Test
+    public void looksUpNamesAndSynonymsIgnoringCase() throws IOException {
+        Formulary formulary = Formulary.wrap(ByteBuffer.wrap(compile()));
+
+        assertEquals(formulary.find("paracetamol"), formulary.find(" Acetaminophen "));
+        assertEquals(-1, formulary.find("unobtainium"));
+        List<String> names = formulary.names();
+        List<String> sorted = new ArrayList<>(names);
+        Collections.sort(sorted);
+        assertEquals(sorted, names);
+    }
+
+    @Test
+    public void buildsTheInteractionCheckerFromItsRules() throws IOException {
+        InteractionChecker checker = Formulary.wrap(ByteBuffer.wrap(compile())).interactionChecker();
+
+        List<InteractionChecker.Interaction> found = checker.check(
+                Arrays.asList("brufen", "warfarin"), Collections.<String>emptyList());
+
+        assertEquals(1, found.size());
+        assertEquals(InteractionChecker.Severity.MAJOR, found.get(0).severity);
+    }
+
+    @Test
+    public void shippedAssetIsUpToDate() throws IOException {
+        byte[] shipped = new byte[(int) ASSET.length()];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(ASSET))) {
+            in.readFully(shipped);
+        }
+
+        assertArrayEquals("Run ./gradlew :analysis:compileFormulary", compile(), shipped);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        Formulary.wrap(ByteBuffer.wrap("not a formulary file at all, just text".getBytes(Formulary.UTF_8)));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsATruncatedFile() throws IOException {
+        byte[] compiled = compile();
+        Formulary.wrap(ByteBuffer.wrap(Arrays.copyOf(compiled, Formulary.HEADER_SIZE + 4)));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.aiprescriptionreader;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class FuzzyDrugIndexTest {
+
+    private static final FuzzyDrugIndex INDEX = new FuzzyDrugIndex(
+            Arrays.asList("paracetamol", "amoxicillin", "atorvastatin", "azithromycin", "omeprazole"), 2);
+
+    @Test
+    public void findsAMissingLetter() {
+        FuzzyDrugIndex.Candidate best = INDEX.best("amoxicilin", 2);
+
+        assertEquals("amoxicillin", best.name);
+        assertEquals(1, best.distance);
+        assertTrue(best.score < 1f);
+    }
+
+    @Test
+    public void scoresDigitForLetterConfusionBelowAnExactMatch() {
+        FuzzyDrugIndex.Candidate misread = INDEX.best("paracetam0l", 2);
+        FuzzyDrugIndex.Candidate exact = INDEX.best("Paracetamol", 2);
+
+        assertEquals("paracetamol", misread.name);
+        assertTrue(misread.score < 1f);
+        assertEquals(1f, exact.score, 0f);
+    }
+
+    @Test
+    public void ignoresWordsOutOfRange() {
+        assertNull(INDEX.best("prescription", 2));
+        assertNull(INDEX.best("amoxicilin", 0));
+        assertTrue(INDEX.lookup("", 2).isEmpty());
+    }
+
+    @Test
+    public void countsEditsUpToTheLimit() {
+        assertEquals(0, FuzzyDrugIndex.editDistance("insulin", "insulin", 2));
+        assertEquals(1, FuzzyDrugIndex.editDistance("insulin", "insolin", 2));
+        assertEquals(2, FuzzyDrugIndex.editDistance("omeprazole", "omprazol", 2));
+        assertTrue(FuzzyDrugIndex.editDistance("omeprazole", "losartan", 2) > 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDistancesBeyondThePrefix() {
+        new FuzzyDrugIndex(Collections.singletonList("insulin"), 7);
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.aiprescriptionreader;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class ImagePreprocessorTest {
+
+    private static final int BLACK = 0xff000000;
+    private static final int WHITE = 0xffffffff;
+
+    private static int[] blank(int width, int height, int color) {
+        int[] argb = new int[width * height];
+        Arrays.fill(argb, color);
+        return argb;
+    }
+
+    /**
+     * White page with black columns [0, 4) and [20, 24).
+     */
+    private static int[] columns(int width, int height) {
+        int[] argb = blank(width, height, WHITE);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (x < 4 || (x >= 20 && x < 24)) argb[y * width + x] = BLACK;
+            }
+        }
+        return argb;
+    }
+
+    /**
+     * Text-like lines three pixels thick every 30 rows, sloping by degrees.
+     */
+    private static int[] lines(int width, int height, double degrees) {
+        int[] argb = blank(width, height, WHITE);
+        double slope = Math.tan(Math.toRadians(degrees));
+        for (int start = 30; start < height - 30; start += 30) {
+            for (int x = 20; x < width - 20; x++) {
+                int y = start + (int) Math.round((x - width / 2.0) * slope);
+                for (int t = 0; t < 3; t++) {
+                    if (y + t >= 0 && y + t < height) argb[(y + t) * width + x] = BLACK;
+                }
+            }
+        }
+        return argb;
+    }
+
+    private static boolean isBlackRow(ImagePreprocessor.Result result, int y) {
+        for (int x = 0; x < result.width; x++) {
+            if (result.pixels[y * result.width + x] != 0) return false;
+        }
+        return true;
+    }
+
+    @Test
+    public void rotatesClockwiseToUpright() {
+        ImagePreprocessor preprocessor = new ImagePreprocessor(null, 1);
+
+        ImagePreprocessor.Result result = preprocessor.process(columns(40, 60), 40, 60, 90,
+                ImagePreprocessor.Mode.GRAY);
+
+        assertEquals(60, result.width);
+        assertEquals(40, result.height);
+        assertTrue(isBlackRow(result, 0));
+        assertTrue(isBlackRow(result, 21));
+        assertFalse(isBlackRow(result, 10));
+        assertFalse(isBlackRow(result, 37));
+    }
+
+    @Test
+    public void normalizesNegativeAngles() {
+        ImagePreprocessor preprocessor = new ImagePreprocessor(null, 1);
+
+        ImagePreprocessor.Result result = preprocessor.process(columns(40, 60), 40, 60, -90,
+                ImagePreprocessor.Mode.GRAY);
+
+        // Same as 270: column x lands on row 39 - x
+        assertTrue(isBlackRow(result, 39));
+        assertTrue(isBlackRow(result, 17));
+        assertFalse(isBlackRow(result, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRotationsThatAreNotQuarterTurns() {
+        new ImagePreprocessor(null, 1).process(columns(40, 60), 40, 60, 45, ImagePreprocessor.Mode.GRAY);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTooFewPixels() {
+        new ImagePreprocessor(null, 1).process(new int[10], 4, 4, 0, ImagePreprocessor.Mode.GRAY);
+    }
+
+    @Test
+    public void leavesAStraightPageAlone() {
+        ImagePreprocessor.Result result = new ImagePreprocessor(null, 1)
+                .process(lines(400, 300, 0), 400, 300, 0, ImagePreprocessor.Mode.GRAY);
+
+        assertEquals(0f, result.skewDegrees, 0f);
+    }
+
+    @Test
+    public void measuresSkew() {
+        ImagePreprocessor.Result result = new ImagePreprocessor(null, 1)
+                .process(lines(400, 300, 3), 400, 300, 0, ImagePreprocessor.Mode.GRAY);
+
+        assertEquals(3f, result.skewDegrees, ImagePreprocessor.SKEW_STEP_DEGREES);
+    }
+
+    @Test
+    public void deskewedLinesAreLevel() {
+        ImagePreprocessor preprocessor = new ImagePreprocessor(null, 1);
+        ImagePreprocessor.Result result = preprocessor.process(lines(400, 300, -4), 400, 300, 0,
+                ImagePreprocessor.Mode.GRAY);
+
+        assertEquals(0f, preprocessor.estimateSkew(result.pixels, result.width, result.height),
+                ImagePreprocessor.SKEW_STEP_DEGREES);
+    }
+
+    @Test
+    public void thresholdSeparatesInkFromAnUnevenBackground() {
+        int width = 200, height = 100;
+        int[] argb = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // Background fades from light to mid gray; a darker mark on each side
+                int v = 230 - x / 2;
+                boolean ink = y >= 45 && y < 55 && ((x >= 20 && x < 30) || (x >= 170 && x < 180));
+                if (ink) v -= 80;
+                argb[y * width + x] = 0xff000000 | (v << 16) | (v << 8) | v;
+            }
+        }
+
+        ImagePreprocessor.Result result = new ImagePreprocessor(null, 1)
+                .process(argb, width, height, 0, ImagePreprocessor.Mode.BINARY);
+
+        assertEquals(0, result.pixels[50 * width + 25]);
+        assertEquals(0, result.pixels[50 * width + 175]);
+        assertEquals((byte) 0xff, result.pixels[10 * width + 25]);
+        assertEquals((byte) 0xff, result.pixels[10 * width + 175]);
+        for (byte pixel : Arrays.copyOf(result.pixels, width * height)) {
+            assertTrue(pixel == 0 || pixel == (byte) 0xff);
+        }
+    }
+
+    @Test
+    public void stripesGiveTheSameResultAsOneThread() {
+        int[] argb = lines(320, 240, 2);
+        byte[] single = Arrays.copyOf(new ImagePreprocessor(null, 1)
+                .process(argb, 320, 240, 180, ImagePreprocessor.Mode.BINARY).pixels, 320 * 240);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            ImagePreprocessor parallel = new ImagePreprocessor(executor, 4);
+            for (int i = 0; i < 2; i++) {
+                byte[] striped = Arrays.copyOf(
+                        parallel.process(argb, 320, 240, 180, ImagePreprocessor.Mode.BINARY).pixels, 320 * 240);
+                assertArrayEquals(single, striped);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.aiprescriptionreader;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InteractionCheckerTest {
+
+    private static final InteractionChecker CHECKER = InteractionChecker.defaults().build();
+    private static final List<String> NONE = Collections.emptyList();
+
+    @Test
+    public void flagsAKnownPair() {
+        List<InteractionChecker.Interaction> found = CHECKER.check(Arrays.asList("Warfarin", "ibuprofen"), NONE);
+
+        assertEquals(1, found.size());
+        InteractionChecker.Interaction interaction = found.get(0);
+        assertEquals(InteractionChecker.Severity.MAJOR, interaction.severity);
+        assertEquals("Increased bleeding risk", interaction.description);
+        assertFalse(interaction.withHistory);
+    }
+
+    @Test
+    public void flagsAPairWithTheHistory() {
+        List<InteractionChecker.Interaction> found = CHECKER.check(
+                Collections.singletonList("metformin"), Arrays.asList("iohexol", "paracetamol"));
+
+        assertEquals(1, found.size());
+        assertEquals("metformin", found.get(0).drugA);
+        assertEquals("iohexol", found.get(0).drugB);
+        assertTrue(found.get(0).withHistory);
+    }
+
+    @Test
+    public void ordersMostSevereFirst() {
+        List<InteractionChecker.Interaction> found = CHECKER.check(
+                Arrays.asList("ibuprofen", "losartan", "spironolactone"), NONE);
+
+        assertEquals(2, found.size());
+        assertEquals(InteractionChecker.Severity.MAJOR, found.get(0).severity);
+        assertEquals(InteractionChecker.Severity.MODERATE, found.get(1).severity);
+    }
+
+    @Test
+    public void ignoresUnknownAndRepeatedDrugs() {
+        assertTrue(CHECKER.check(Arrays.asList("paracetamol", "vitamin c", "paracetamol"), NONE).isEmpty());
+        assertEquals(-1, CHECKER.idOf("vitamin c"));
+    }
+
+    @Test
+    public void expandsClassesAndResolvesSynonyms() {
+        InteractionChecker checker = new InteractionChecker.Builder()
+                .addDrug("ibuprofen", "nsaid")
+                .addDrug("naproxen", "nsaid")
+                .addSynonym("brufen", "ibuprofen")
+                .addRule("class:nsaid", "class:nsaid", InteractionChecker.Severity.MODERATE, "Duplicate NSAIDs")
+                .build();
+
+        List<InteractionChecker.Interaction> found = checker.check(Arrays.asList("Brufen", "naproxen"), NONE);
+
+        assertEquals(1, found.size());
+        assertEquals("ibuprofen", found.get(0).drugA);
+        assertEquals("naproxen", found.get(0).drugB);
+    }
+}
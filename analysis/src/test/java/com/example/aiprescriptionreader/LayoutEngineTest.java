@@ -0,0 +1,79 @@
+package com.example.aiprescriptionreader;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LayoutEngineTest {
+
+    private static RecognizedText.Line line(String text, int left, int top, int right, int bottom) {
+        return new RecognizedText.Line(text, 0, left, top, right, bottom, 0.9f,
+                Collections.<RecognizedText.Element>emptyList());
+    }
+
+    private static RecognizedText page(RecognizedText.Line... lines) {
+        return new RecognizedText("", Arrays.asList(lines));
+    }
+
+    private static List<String> texts(List<LayoutEngine.Row> rows) {
+        List<String> texts = new ArrayList<>();
+        for (LayoutEngine.Row row : rows) texts.add(row.text());
+        return texts;
+    }
+
+    @Test
+    public void joinsColumnsOfOneRowLeftToRight() {
+        // Engines return table cells as separate blocks, often column by column
+        RecognizedText text = page(
+                line("1-0-1", 600, 102, 700, 130),
+                line("Amoxicillin", 40, 100, 260, 130),
+                line("500mg", 320, 98, 420, 128),
+                line("Ibuprofen", 40, 160, 220, 190),
+                line("1-1-1", 600, 163, 700, 191));
+
+        List<LayoutEngine.Row> rows = LayoutEngine.rows(text);
+
+        assertEquals(Arrays.asList("Amoxicillin 500mg 1-0-1", "Ibuprofen 1-1-1"), texts(rows));
+        assertArrayEquals(new int[]{0, 1, 2}, rows.get(0).columns);
+        assertArrayEquals(new int[]{0, 2}, rows.get(1).columns);
+        assertEquals(98, rows.get(0).top);
+        assertEquals(130, rows.get(0).bottom);
+    }
+
+    @Test
+    public void keepsLinesStackedInOneColumnApart() {
+        // Tightly spaced: the boxes overlap vertically but sit in the same column
+        RecognizedText text = page(
+                line("Paracetamol 500mg", 40, 100, 400, 130),
+                line("after meals", 40, 115, 300, 145));
+
+        assertEquals(Arrays.asList("Paracetamol 500mg", "after meals"), texts(LayoutEngine.rows(text)));
+    }
+
+    @Test
+    public void putsLinesWithoutGeometryLastInEngineOrder() {
+        RecognizedText text = page(
+                line("second", 0, 0, 0, 0),
+                line("first", 40, 100, 200, 130),
+                line("third", 0, 0, 0, 0),
+                line("  ", 40, 200, 200, 230));
+
+        assertEquals(Arrays.asList("first", "second", "third"), texts(LayoutEngine.rows(text)));
+    }
+
+    @Test
+    public void mergesOverlappingExtentsIntoColumns() {
+        List<RecognizedText.Line> lines = Arrays.asList(
+                line("a", 40, 0, 200, 10),
+                line("b", 60, 20, 260, 30),
+                line("c", 300, 0, 400, 10),
+                line("d", 600, 0, 700, 10));
+
+        assertArrayEquals(new int[]{40, 300, 600}, LayoutEngine.columnStarts(lines));
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.aiprescriptionreader;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MedicineAnalyzerTest {
+
+    private static Medicine only(String text) {
+        List<Medicine> medicines = MedicineAnalyzer.analyze(text).getMedicines();
+        assertEquals(medicines.toString(), 1, medicines.size());
+        return medicines.get(0);
+    }
+
+    @Test
+    public void readsAnExactLine() {
+        Medicine medicine = only("Paracetamol 500mg 1-0-1 x 5 days");
+
+        assertEquals("Paracetamol", medicine.getName());
+        assertEquals("500mg", medicine.getDosage());
+        assertEquals("1-0-1", medicine.getFrequency());
+        assertEquals("x 5 days", medicine.getDuration());
+        assertFalse(medicine.isFuzzyMatch());
+    }
+
+    @Test
+    public void correctsOcrTypos() {
+        Medicine amoxicillin = only("Amoxicilin 500mg tds");
+        Medicine paracetamol = only("paracetam0l 650mg");
+
+        assertEquals("amoxicillin", amoxicillin.getName());
+        assertEquals("500mg", amoxicillin.getDosage());
+        assertTrue(amoxicillin.isFuzzyMatch());
+        assertEquals("paracetamol", paracetamol.getName());
+        assertTrue(paracetamol.isFuzzyMatch());
+    }
+
+    @Test
+    public void joinsANameSplitByOcr() {
+        Medicine medicine = only("ator vastatin 10mg od");
+
+        assertEquals("atorvastatin", medicine.getName());
+        assertEquals(0, medicine.getStart());
+        assertEquals("ator vastatin".length(), medicine.getEnd());
+        assertEquals("10mg", medicine.getDosage());
+    }
+
+    @Test
+    public void findsNoMedicineInPlainText() {
+        PrescriptionAnalysis analysis = MedicineAnalyzer.analyze("Patient: John\nDate: 12/03\nTake rest");
+
+        assertFalse(analysis.hasMedicines());
+    }
+
+    @Test
+    public void reportsDosageForms() {
+        PrescriptionAnalysis analysis = MedicineAnalyzer.analyze("Tab Metformin 500mg\nSyrup Paracetamol 5ml");
+
+        assertEquals(2, analysis.getMedicines().size());
+        assertTrue(analysis.getDosageForms().contains(DosageForm.TABLET));
+        assertTrue(analysis.getDosageForms().contains(DosageForm.LIQUID));
+    }
+
+    @Test
+    public void readsAScheduleRowBelowItsDrugRow() {
+        RecognizedText text = FakeRecognitionEngine.fromPlainText("Amoxicillin 500mg\n1-0-1 x 7 days", 0.9f);
+
+        List<Medicine> medicines = MedicineAnalyzer.analyze(text).getMedicines();
+
+        assertEquals(1, medicines.size());
+        assertEquals("1-0-1", medicines.get(0).getFrequency());
+        assertEquals("x 7 days", medicines.get(0).getDuration());
+    }
+}
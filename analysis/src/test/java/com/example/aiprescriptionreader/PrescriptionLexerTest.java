@@ -0,0 +1,67 @@
+package com.example.aiprescriptionreader;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PrescriptionLexerTest {
+
+    private static final DrugMatcher MATCHER = DrugMatcher.fromNames(Arrays.asList("paracetamol", "amoxicillin"));
+
+    private static String lex(String line) {
+        PrescriptionLexer lexer = new PrescriptionLexer(line);
+        return lexer.tokenize(0, line.length(), MATCHER.findAll(line)).toString();
+    }
+
+    @Test
+    public void readsDrugDoseScheduleAndDuration() {
+        assertEquals("[DRUG(Paracetamol), QUANTITY(500mg), FREQUENCY(1-0-1), DURATION(x 5 days)]",
+                lex("Paracetamol 500mg 1-0-1 x 5 days"));
+    }
+
+    @Test
+    public void readsSpelledOutSchedules() {
+        assertEquals("[DRUG(Amoxicillin), QUANTITY(250 mg), FREQUENCY(twice daily), DURATION(for 7 days)]",
+                lex("Amoxicillin 250 mg twice daily for 7 days"));
+        assertEquals("[FREQUENCY(every 8 hours)]", lex("every 8 hours"));
+        assertEquals("[FREQUENCY(3 times a day)]", lex("3 times a day"));
+        assertEquals("[QUANTITY(1 tab), FREQUENCY(bd)]", lex("1 tab bd"));
+    }
+
+    @Test
+    public void readsFourSlotSchedulesAndDurationsInWeeks() {
+        assertEquals("[FREQUENCY(1+1+1+1), DURATION(× 2 weeks)]", lex("1+1+1+1 × 2 weeks"));
+    }
+
+    @Test
+    public void doesNotTakeDecimalsForSchedules() {
+        assertEquals("[]", lex("version 1-0-1.5"));
+    }
+
+    @Test
+    public void tokenizesOnlyTheGivenLine() {
+        String text = "Paracetamol 500mg\nAmoxicillin 250mg 1-1-1";
+        int lineStart = text.indexOf('\n') + 1;
+        PrescriptionLexer lexer = new PrescriptionLexer(text);
+
+        List<PrescriptionLexer.Token> tokens = lexer.tokenize(lineStart, text.length(), MATCHER.findAll(text));
+
+        assertEquals("[DRUG(Amoxicillin), QUANTITY(250mg), FREQUENCY(1-1-1)]", tokens.toString());
+        assertEquals(lineStart, tokens.get(0).start);
+    }
+
+    @Test
+    public void reusesTheMatcherAfterReset() {
+        PrescriptionLexer lexer = new PrescriptionLexer("500mg");
+        lexer.tokenize(0, 5, Collections.<DrugMatcher.Match>emptyList());
+
+        lexer.reset("od");
+
+        assertEquals("[FREQUENCY(od)]",
+                lexer.tokenize(0, 2, Collections.<DrugMatcher.Match>emptyList()).toString());
+    }
+}
@@ -27,6 +27,10 @@ android {
             )
         }
     }
+    androidResources {
+        // Formulary is memory-mapped from the APK, which needs it stored uncompressed
+        noCompress += "rxf"
+    }
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
@@ -34,6 +38,7 @@ android {
 }
 
 dependencies {
+    implementation(project(":analysis"))
     implementation(libs.appcompat)
     implementation(libs.material)
     implementation(libs.activity)
@@ -0,0 +1,190 @@
+package com.example.aiprescriptionreader;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.util.Log;
+
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.text.Text;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Two-pass recognition. The whole image is recognized at a low resolution first; only
+ * the lines that come back weak are cropped from the full-resolution bitmap and
+ * recognized again. A clean prescription costs one cheap pass, and a hard one pays
+ * full resolution only where it needs to.
+ *
+ * Results are in upright full-resolution coordinates, the same as a single pass
+ * over the full bitmap would give. When it ends up reading the whole bitmap at full
+ * resolution anyway, the result is marked with {@link MlKitRecognitionEngine#FULL_PASS}
+ * so a chain doesn't run that pass again.
+ */
+public class AdaptiveRecognizer {
+
+    private static final String TAG = "AdaptiveRecognizer";
+
+    static final int FIRST_PASS_MAX_EDGE = 1024;
+    static final int MAX_REFINED_LINES = 8;
+    // With more weak lines than this, one full pass is cheaper than the crops
+    static final float FULL_PASS_WEAK_FRACTION = 0.5f;
+
+    private final RecognitionService recognitionService;
+
+    public AdaptiveRecognizer(RecognitionService recognitionService) {
+        this.recognitionService = recognitionService;
+    }
+
+    /**
+     * Recognizes the bitmap, which is stored unrotated and displayed after rotating by
+     * rotationDegrees. Blocks; must not be called on the main thread.
+     */
+    public RecognizedText recognize(Bitmap full, int rotationDegrees) throws Exception {
+        return recognize(full, rotationDegrees, null);
+    }
+
+    /**
+     * As above, checking signal (which may be null) between recognitions.
+     *
+     * @throws OperationCanceledException once signal is cancelled
+     */
+    public RecognizedText recognize(Bitmap full, int rotationDegrees, CancellationSignal signal) throws Exception {
+        float scale = Math.min(1f, (float) FIRST_PASS_MAX_EDGE / Math.max(full.getWidth(), full.getHeight()));
+        if (scale > 0.8f) {
+            return recognizeBitmap(full, rotationDegrees).withPass(MlKitRecognitionEngine.FULL_PASS);
+        }
+
+        Bitmap low = Bitmap.createScaledBitmap(full, Math.round(full.getWidth() * scale),
+                Math.round(full.getHeight() * scale), true);
+        RecognizedText firstPass;
+        try {
+            firstPass = scale(recognizeBitmap(low, rotationDegrees), 1f / scale);
+        } finally {
+            low.recycle();
+        }
+
+        if (signal != null) signal.throwIfCanceled();
+        List<Integer> weak = RecognitionQuality.weakLines(firstPass, MedicineAnalyzer.currentDrugIndex().matcher);
+        if (weak.isEmpty()) {
+            Log.d(TAG, "First pass clean: " + firstPass.getLines().size() + " lines");
+            return firstPass;
+        }
+        if (firstPass.getLines().isEmpty() || weak.size() > firstPass.getLines().size() * FULL_PASS_WEAK_FRACTION) {
+            Log.d(TAG, weak.size() + "/" + firstPass.getLines().size() + " weak lines, full pass");
+            return recognizeBitmap(full, rotationDegrees).withPass(MlKitRecognitionEngine.FULL_PASS);
+        }
+
+        List<RecognizedText.Line> lines = new ArrayList<>(firstPass.getLines());
+        int refined = 0;
+        for (int i = 0; i < weak.size() && i < MAX_REFINED_LINES; i++) {
+            if (signal != null) signal.throwIfCanceled();
+            int index = weak.get(i);
+            RecognizedText.Line better = refine(full, rotationDegrees, lines.get(index));
+            if (better != null) {
+                lines.set(index, better);
+                refined++;
+            }
+        }
+        Log.d(TAG, "Refined " + refined + "/" + weak.size() + " weak lines of " + lines.size());
+        return new RecognizedText(joinLines(lines), lines);
+    }
+
+    private RecognizedText recognizeBitmap(Bitmap bitmap, int rotationDegrees) throws Exception {
+        Text visionText = recognitionService.recognize(InputImage.fromBitmap(bitmap, rotationDegrees));
+        return OCRManager.toRecognizedText(visionText);
+    }
+
+    /**
+     * Recognizes the line's padded box at full resolution. Returns the replacement
+     * line, or null when the second look is no better.
+     */
+    private RecognizedText.Line refine(Bitmap full, int rotationDegrees, RecognizedText.Line line) throws Exception {
+        int padX = Math.max(8, line.width() / 20);
+        int padY = Math.max(8, line.height() / 3);
+        int uprightWidth = rotationDegrees % 180 == 0 ? full.getWidth() : full.getHeight();
+        int uprightHeight = rotationDegrees % 180 == 0 ? full.getHeight() : full.getWidth();
+        Rect upright = new Rect(Math.max(0, line.left - padX), Math.max(0, line.top - padY),
+                Math.min(uprightWidth, line.right + padX), Math.min(uprightHeight, line.bottom + padY));
+        if (upright.width() < 16 || upright.height() < 16) return null;
+
+        Rect source = toBitmapRect(upright, rotationDegrees, full.getWidth(), full.getHeight());
+        Bitmap crop = Bitmap.createBitmap(full, source.left, source.top, source.width(), source.height());
+        RecognizedText cropText;
+        try {
+            cropText = recognizeBitmap(crop, rotationDegrees);
+        } finally {
+            if (crop != full) crop.recycle();
+        }
+        if (cropText.getLines().isEmpty()) return null;
+
+        StringBuilder text = new StringBuilder();
+        List<RecognizedText.Element> elements = new ArrayList<>();
+        float confidenceSum = 0;
+        int confidenceCount = 0;
+        for (RecognizedText.Line cropLine : cropText.getLines()) {
+            if (text.length() > 0) text.append(' ');
+            text.append(cropLine.text);
+            float c = RecognitionQuality.lineConfidence(cropLine);
+            if (c >= 0) {
+                confidenceSum += c;
+                confidenceCount++;
+            }
+            for (RecognizedText.Element e : cropLine.elements) {
+                elements.add(new RecognizedText.Element(e.text, e.left + upright.left, e.top + upright.top,
+                        e.right + upright.left, e.bottom + upright.top, e.confidence));
+            }
+        }
+        float confidence = confidenceCount > 0 ? confidenceSum / confidenceCount : -1;
+
+        float before = RecognitionQuality.lineConfidence(line);
+        DrugMatcher matcher = MedicineAnalyzer.currentDrugIndex().matcher;
+        boolean gainedDrug = matcher.findAll(line.text).isEmpty() && !matcher.findAll(text).isEmpty();
+        if (!gainedDrug && confidence <= before) return null;
+
+        return new RecognizedText.Line(text.toString(), line.block, line.left, line.top, line.right, line.bottom,
+                confidence, elements);
+    }
+
+    /**
+     * Maps a rectangle in upright (rotated) coordinates back onto the stored bitmap.
+     */
+    static Rect toBitmapRect(Rect r, int rotationDegrees, int width, int height) {
+        switch (rotationDegrees) {
+            case 90:
+                return new Rect(r.top, height - r.right, r.bottom, height - r.left);
+            case 180:
+                return new Rect(width - r.right, height - r.bottom, width - r.left, height - r.top);
+            case 270:
+                return new Rect(width - r.bottom, r.left, width - r.top, r.right);
+            default:
+                return new Rect(r);
+        }
+    }
+
+    private static RecognizedText scale(RecognizedText text, float factor) {
+        List<RecognizedText.Line> lines = new ArrayList<>();
+        for (RecognizedText.Line line : text.getLines()) {
+            List<RecognizedText.Element> elements = new ArrayList<>();
+            for (RecognizedText.Element e : line.elements) {
+                elements.add(new RecognizedText.Element(e.text, Math.round(e.left * factor), Math.round(e.top * factor),
+                        Math.round(e.right * factor), Math.round(e.bottom * factor), e.confidence));
+            }
+            lines.add(new RecognizedText.Line(line.text, line.block, Math.round(line.left * factor),
+                    Math.round(line.top * factor), Math.round(line.right * factor), Math.round(line.bottom * factor),
+                    line.confidence, elements));
+        }
+        return new RecognizedText(text.getText(), lines);
+    }
+
+    private static String joinLines(List<RecognizedText.Line> lines) {
+        StringBuilder sb = new StringBuilder();
+        for (RecognizedText.Line line : lines) {
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(line.text);
+        }
+        return sb.toString();
+    }
+}
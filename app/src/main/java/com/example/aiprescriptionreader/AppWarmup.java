@@ -0,0 +1,122 @@
+package com.example.aiprescriptionreader;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.mlkit.vision.common.InputImage;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Does the first-scan work ahead of time on a background thread: maps the formulary
+ * and builds the matchers from it, runs one analysis so the analyzer classes and
+ * patterns are loaded, and runs one recognition so the ML Kit model is initialized.
+ * Started from {@link PrescriptionApp}, so it overlaps with the user looking at the
+ * home and scanner screens instead of with their first capture.
+ */
+public class AppWarmup {
+
+    private static final String TAG = "AppWarmup";
+    private static final String FORMULARY_ASSET = "formulary.rxf";
+    private static final String SAMPLE_TEXT = "Tab Paracetamol 500mg 1-0-1 for 5 days";
+
+    private static boolean started;
+    private static volatile String report = "Warm-up not started";
+
+    public static void start(Context context) {
+        synchronized (AppWarmup.class) {
+            if (started) return;
+            started = true;
+        }
+        Context app = context.getApplicationContext();
+        report = "Warm-up running";
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            run(app);
+        }, "app-warmup");
+        thread.start();
+    }
+
+    /**
+     * How long each step took and when warm-up finished.
+     */
+    public static String getReport() {
+        return report;
+    }
+
+    private static void run(Context context) {
+        long start = SystemClock.elapsedRealtime();
+        long formularyMs = time(() -> loadFormulary(context));
+        long analysisMs = time(() -> MedicineAnalyzer.analyze(SAMPLE_TEXT));
+        long recognizerMs = time(AppWarmup::warmRecognizer);
+        long totalMs = SystemClock.elapsedRealtime() - start;
+
+        report = String.format(Locale.US, "Warm-up took %d ms, finished at %s\n"
+                        + "  formulary %d ms, analysis %d ms, recognizer %d ms",
+                totalMs, new SimpleDateFormat("HH:mm:ss", Locale.US).format(new Date()),
+                formularyMs, analysisMs, recognizerMs);
+        Log.d(TAG, report);
+    }
+
+    private static long time(Runnable step) {
+        long start = SystemClock.elapsedRealtime();
+        try {
+            step.run();
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Warm-up step failed", e);
+        }
+        return SystemClock.elapsedRealtime() - start;
+    }
+
+    /**
+     * Maps the bundled formulary and swaps it in for the built-in drug list and
+     * interaction rules. The asset is stored uncompressed so it is mapped straight
+     * out of the APK rather than read into the heap.
+     */
+    private static void loadFormulary(Context context) {
+        try (AssetFileDescriptor afd = context.getAssets().openFd(FORMULARY_ASSET);
+             FileInputStream in = afd.createInputStream()) {
+            Formulary formulary = Formulary.map(in.getChannel(), afd.getStartOffset(), afd.getDeclaredLength());
+            MedicineAnalyzer.setFormulary(formulary.names());
+            InteractionChecker.setDefault(formulary.interactionChecker());
+        } catch (IOException e) {
+            Log.w(TAG, "Formulary not loaded, using the built-in drug list", e);
+        }
+    }
+
+    /**
+     * One recognition of a small rendered line. The service keeps the recognizer for
+     * its idle timeout after this, which covers the walk to the scanner screen.
+     */
+    private static void warmRecognizer() {
+        Bitmap bitmap = Bitmap.createBitmap(480, 64, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawColor(Color.WHITE);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(Color.BLACK);
+        paint.setTextSize(32);
+        canvas.drawText(SAMPLE_TEXT, 8, 44, paint);
+
+        RecognitionService service = RecognitionService.getInstance();
+        service.acquire();
+        try {
+            service.recognize(InputImage.fromBitmap(bitmap, 0));
+        } catch (Exception e) {
+            Log.w(TAG, "Recognizer warm-up failed", e);
+        } finally {
+            service.release();
+            bitmap.recycle();
+        }
+    }
+}
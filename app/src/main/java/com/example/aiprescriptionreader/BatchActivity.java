@@ -0,0 +1,119 @@
+package com.example.aiprescriptionreader;
+
+import android.os.Bundle;
+import android.widget.Button;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+import android.widget.Toast;
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Scans every saved prescription image in one go. Images come from the "image_paths"
+ * extra when given, otherwise from the folder the scanner saves captures to.
+ */
+public class BatchActivity extends AppCompatActivity {
+
+    private TextView tvStatus, tvResults;
+    private ProgressBar progress;
+    private Button btnStart, btnCancel;
+
+    private RecognitionService recognitionService;
+    private BatchScanner scanner;
+    private List<File> images;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_batch);
+
+        tvStatus = findViewById(R.id.tvBatchStatus);
+        tvResults = findViewById(R.id.tvBatchResults);
+        progress = findViewById(R.id.batchProgress);
+        btnStart = findViewById(R.id.btnBatchStart);
+        btnCancel = findViewById(R.id.btnBatchCancel);
+
+        recognitionService = RecognitionService.getInstance();
+        recognitionService.acquire();
+
+        images = findImages();
+        tvStatus.setText(images.size() + " images found");
+        btnStart.setEnabled(!images.isEmpty());
+
+        btnStart.setOnClickListener(v -> startBatch());
+        btnCancel.setOnClickListener(v -> {
+            if (scanner != null) scanner.cancel();
+        });
+    }
+
+    private List<File> findImages() {
+        List<File> files = new ArrayList<>();
+        String[] paths = getIntent().getStringArrayExtra("image_paths");
+        if (paths != null) {
+            for (String path : paths) files.add(new File(path));
+            return files;
+        }
+
+        File[] found = ImageStore.getInstance(this).getOriginalsDir().listFiles();
+        if (found == null) return files;
+        Arrays.sort(found);
+        for (File file : found) {
+            String name = file.getName().toLowerCase(Locale.ROOT);
+            if (file.isFile() && (name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".png"))) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    private void startBatch() {
+        btnStart.setEnabled(false);
+        btnCancel.setEnabled(true);
+        tvResults.setText("");
+        progress.setMax(images.size());
+        progress.setProgress(0);
+
+        scanner = new BatchScanner(recognitionService,
+                new PrescriptionImageDecoder(BitmapPool.getInstance()), OcrResultCache.getInstance(this));
+        scanner.start(images, new BatchScanner.Listener() {
+            @Override
+            public void onProgress(BatchScanner.PageResult page, int completed, int total) {
+                String line = page.isSuccessful()
+                        ? "✅ " + page.image.getName() + " — " + page.analysis.getMedicines().size() + " medicines\n"
+                        : "❌ " + page.image.getName() + " — " + page.error + "\n";
+                runOnUiThread(() -> {
+                    progress.setProgress(completed);
+                    tvStatus.setText("Scanning " + completed + " / " + total);
+                    tvResults.append(line);
+                });
+            }
+
+            @Override
+            public void onFinished(BatchScanner.Summary summary) {
+                runOnUiThread(() -> {
+                    btnStart.setEnabled(true);
+                    btnCancel.setEnabled(false);
+                    tvStatus.setText(String.format(Locale.US, "%s: %d ok, %d failed in %.1fs (%.1f pages/min)",
+                            summary.cancelled ? "Cancelled" : "Done",
+                            summary.succeeded, summary.failed, summary.elapsedMs / 1000.0,
+                            summary.pagesPerMinute()));
+                    if (!summary.cancelled) {
+                        Toast.makeText(BatchActivity.this, "Batch scan complete", Toast.LENGTH_SHORT).show();
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (scanner != null) scanner.cancel();
+        recognitionService.release();
+    }
+}
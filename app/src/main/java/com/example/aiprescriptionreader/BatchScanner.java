@@ -0,0 +1,303 @@
+package com.example.aiprescriptionreader;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many images through decode → recognize → analyze as a pipeline. Each stage has
+ * its own worker count and a bounded number of queued items; a stage blocks when the
+ * next one is full, so at most a few decoded bitmaps are alive at any time no matter
+ * how many images are queued.
+ */
+public class BatchScanner {
+
+    private static final String TAG = "BatchScanner";
+
+    private static final int DECODE_WORKERS = 2;
+    private static final int RECOGNIZE_WORKERS = 1;
+    private static final int ANALYZE_WORKERS = 1;
+    private static final int QUEUE_PER_STAGE = 2;
+
+    public interface Listener {
+        /**
+         * Called on a worker thread after each image, successful or not.
+         */
+        void onProgress(PageResult page, int completed, int total);
+
+        /**
+         * Called once when every image is done, or on the cancelling thread after cancel().
+         */
+        void onFinished(Summary summary);
+    }
+
+    public static class PageResult {
+        public final File image;
+        // Null when the page failed
+        public final String text;
+        public final PrescriptionAnalysis analysis;
+        public final String error;
+
+        PageResult(File image, String text, PrescriptionAnalysis analysis, String error) {
+            this.image = image;
+            this.text = text;
+            this.analysis = analysis;
+            this.error = error;
+        }
+
+        public boolean isSuccessful() {
+            return error == null;
+        }
+    }
+
+    public static class Summary {
+        public final int total, succeeded, failed;
+        public final boolean cancelled;
+        public final long elapsedMs;
+
+        Summary(int total, int succeeded, int failed, boolean cancelled, long elapsedMs) {
+            this.total = total;
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.cancelled = cancelled;
+            this.elapsedMs = elapsedMs;
+        }
+
+        public double pagesPerMinute() {
+            return elapsedMs > 0 ? (succeeded + failed) * 60_000.0 / elapsedMs : 0;
+        }
+    }
+
+    private static class Page {
+        final File file;
+        byte[] bytes;
+        String cacheKey;
+        long dHash;
+        boolean recognized;
+        PrescriptionImageDecoder.DecodedImage decoded;
+        OcrResultCache.Entry cached;
+
+        Page(File file) {
+            this.file = file;
+        }
+    }
+
+    private final AdaptiveRecognizer recognizer;
+    private final PrescriptionImageDecoder decoder;
+    private final OcrResultCache cache;
+    private final Stage decodeStage = new Stage("batch-decode", DECODE_WORKERS);
+    private final Stage recognizeStage = new Stage("batch-ocr", RECOGNIZE_WORKERS);
+    private final Stage analyzeStage = new Stage("batch-analyze", ANALYZE_WORKERS);
+
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private volatile boolean cancelled;
+    private volatile boolean finished;
+    private Listener listener;
+    private Thread feeder;
+    private int total;
+    private long startedAt;
+
+    public BatchScanner(RecognitionService recognitionService, PrescriptionImageDecoder decoder, OcrResultCache cache) {
+        this.recognizer = new AdaptiveRecognizer(recognitionService);
+        this.decoder = decoder;
+        this.cache = cache;
+    }
+
+    /**
+     * Starts the batch. May only be called once per instance.
+     */
+    public void start(List<File> images, Listener listener) {
+        this.listener = listener;
+        this.total = images.size();
+        this.startedAt = SystemClock.elapsedRealtime();
+        if (images.isEmpty()) {
+            finish();
+            return;
+        }
+
+        final List<File> queue = new ArrayList<>(images);
+        feeder = new Thread(() -> {
+            for (File file : queue) {
+                if (cancelled) break;
+                Page page = new Page(file);
+                if (!decodeStage.submit(() -> decode(page))) break;
+            }
+        }, "batch-feeder");
+        feeder.start();
+    }
+
+    /**
+     * Stops feeding new images and interrupts work in flight.
+     */
+    public void cancel() {
+        cancelled = true;
+        if (feeder != null) feeder.interrupt();
+        decodeStage.shutdownNow();
+        recognizeStage.shutdownNow();
+        analyzeStage.shutdownNow();
+        finish();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private void decode(Page page) {
+        try {
+            page.bytes = readFile(page.file);
+            // Batch reads with the adaptive two-pass recognizer and without preprocessing
+            page.cacheKey = OcrResultCache.contentKey(page.bytes, OCRManager.cacheVariant(true, false));
+            page.cached = cache.get(page.cacheKey);
+            if (page.cached == null) {
+                page.decoded = decoder.decode(page.bytes,
+                        PrescriptionImageDecoder.readRotation(page.file.getAbsolutePath()));
+            }
+            // Recognition does not need the raw bytes once decoded
+            page.bytes = null;
+            if (!recognizeStage.submit(() -> recognize(page))) release(page);
+        } catch (Exception e) {
+            fail(page, e);
+        }
+    }
+
+    private void recognize(Page page) {
+        try {
+            if (page.cached == null) {
+                page.dHash = OcrResultCache.dHash(page.decoded.ocr);
+                RecognizedText text = recognizer.recognize(page.decoded.ocr, page.decoded.rotationDegrees);
+                page.cached = new OcrResultCache.Entry(text, RecognitionQuality.confidencePercent(text), null);
+                page.recognized = true;
+                release(page);
+            }
+            if (!analyzeStage.submit(() -> analyze(page))) release(page);
+        } catch (Exception e) {
+            fail(page, e);
+        }
+    }
+
+    private void analyze(Page page) {
+        PageResult result;
+        try {
+            OcrResultCache.Entry entry = page.cached;
+            PrescriptionAnalysis analysis = entry.analysis;
+            if (analysis == null) {
+                analysis = MedicineAnalyzer.analyze(entry.text);
+            }
+            if (page.recognized) {
+                cache.put(page.cacheKey, page.dHash, new OcrResultCache.Entry(entry.text, entry.confidence, analysis));
+            }
+            result = new PageResult(page.file, entry.text.getText(), analysis, null);
+        } catch (Exception e) {
+            fail(page, e);
+            return;
+        }
+        succeeded.incrementAndGet();
+        complete(result);
+    }
+
+    private void fail(Page page, Exception e) {
+        release(page);
+        if (cancelled) return;
+        Log.w(TAG, "Failed " + page.file, e);
+        complete(new PageResult(page.file, null, null, e.getMessage() != null ? e.getMessage() : e.toString()));
+    }
+
+    private void release(Page page) {
+        if (page.decoded != null) {
+            // Batch results are not previewed, so the display copy can go straight away
+            if (page.decoded.display != page.decoded.ocr) page.decoded.display.recycle();
+            decoder.recycle(page.decoded);
+            page.decoded = null;
+        }
+    }
+
+    private void complete(PageResult result) {
+        if (cancelled) return;
+        int done = completed.incrementAndGet();
+        listener.onProgress(result, done, total);
+        if (done == total) finish();
+    }
+
+    private synchronized void finish() {
+        if (finished) return;
+        finished = true;
+        decodeStage.shutdown();
+        recognizeStage.shutdown();
+        analyzeStage.shutdown();
+        int done = completed.get();
+        listener.onFinished(new Summary(total, succeeded.get(), done - succeeded.get(), cancelled,
+                SystemClock.elapsedRealtime() - startedAt));
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            in.readFully(data);
+        }
+        return data;
+    }
+
+    /**
+     * A fixed set of workers plus a bounded number of waiting items. submit() blocks
+     * while the stage is full, which is what pushes back on the stage before it.
+     */
+    private static class Stage {
+        private final ExecutorService executor;
+        private final Semaphore slots;
+
+        Stage(String name, int workers) {
+            AtomicInteger count = new AtomicInteger();
+            executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    r -> new Thread(r, name + "-" + count.incrementAndGet()));
+            slots = new Semaphore(workers + QUEUE_PER_STAGE);
+        }
+
+        /**
+         * Returns false if interrupted or shut down before the task could be queued.
+         */
+        boolean submit(Runnable task) {
+            try {
+                slots.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        slots.release();
+                    }
+                });
+                return true;
+            } catch (RejectedExecutionException e) {
+                slots.release();
+                return false;
+            }
+        }
+
+        void shutdown() {
+            executor.shutdown();
+        }
+
+        void shutdownNow() {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.aiprescriptionreader;
+
+import android.graphics.Bitmap;
+import android.os.CancellationSignal;
+
+/**
+ * A bitmap handed to a {@link RecognitionEngine}, with the signal the engine checks
+ * between recognitions.
+ */
+public class BitmapPage implements RecognitionEngine.Page {
+
+    public final Bitmap bitmap;
+    public final CancellationSignal signal;
+    private final int rotationDegrees;
+    private final String key;
+
+    public BitmapPage(Bitmap bitmap, int rotationDegrees, String key, CancellationSignal signal) {
+        this.bitmap = bitmap;
+        this.rotationDegrees = rotationDegrees;
+        this.key = key;
+        this.signal = signal;
+    }
+
+    @Override
+    public int width() {
+        return bitmap.getWidth();
+    }
+
+    @Override
+    public int height() {
+        return bitmap.getHeight();
+    }
+
+    @Override
+    public int rotationDegrees() {
+        return rotationDegrees;
+    }
+
+    @Override
+    public String key() {
+        return key;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.aiprescriptionreader;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Small pool of mutable bitmaps handed to BitmapFactory as inBitmap so repeated scans
+ * decode into existing buffers instead of allocating fresh multi-megabyte ones.
+ * Bounded by total bytes; anything that does not fit is recycled.
+ */
+public class BitmapPool {
+
+    private static BitmapPool instance;
+
+    public static synchronized BitmapPool getInstance() {
+        if (instance == null) {
+            long budget = Math.min(Runtime.getRuntime().maxMemory() / 8, 64L * 1024 * 1024);
+            instance = new BitmapPool(budget);
+        }
+        return instance;
+    }
+
+    private final long maxBytes;
+    private final List<Bitmap> bitmaps = new ArrayList<>();
+    private long bytes;
+
+    public BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Removes and returns the smallest pooled bitmap that can hold width x height in the
+     * given config, or null if none can.
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        long needed = (long) width * height * bytesPerPixel(config);
+        Bitmap best = null;
+        for (Bitmap bitmap : bitmaps) {
+            if (bitmap.getAllocationByteCount() >= needed
+                    && (best == null || bitmap.getAllocationByteCount() < best.getAllocationByteCount())) {
+                best = bitmap;
+            }
+        }
+        if (best != null) {
+            bitmaps.remove(best);
+            bytes -= best.getAllocationByteCount();
+        }
+        return best;
+    }
+
+    /**
+     * Returns a bitmap to the pool. The caller must not use it afterwards.
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) return;
+        if (!bitmap.isMutable() || bitmap.getAllocationByteCount() > maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+        bitmaps.add(bitmap);
+        bytes += bitmap.getAllocationByteCount();
+        // Evict the oldest entries until back under budget
+        while (bytes > maxBytes && !bitmaps.isEmpty()) {
+            Bitmap evicted = bitmaps.remove(0);
+            bytes -= evicted.getAllocationByteCount();
+            evicted.recycle();
+        }
+    }
+
+    public synchronized void clear() {
+        for (Bitmap bitmap : bitmaps) {
+            bitmap.recycle();
+        }
+        bitmaps.clear();
+        bytes = 0;
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) return 2;
+        if (config == Bitmap.Config.ALPHA_8) return 1;
+        return 4;
+    }
+}
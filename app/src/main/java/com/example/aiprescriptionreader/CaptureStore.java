@@ -0,0 +1,96 @@
+package com.example.aiprescriptionreader;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands captured JPEG bytes from ScannerActivity to ResultActivity in memory, so
+ * recognition does not wait for the file to be written and read back. Writing the
+ * file happens on a background thread, off the capture-to-result path.
+ */
+public class CaptureStore {
+
+    private static final String TAG = "CaptureStore";
+    // Only the last few captures are kept; older ones have long been recognized
+    private static final int MAX_CAPTURES = 3;
+
+    public static class Capture {
+        public final long id;
+        public final byte[] jpeg;
+        public final int rotationDegrees;
+        // SystemClock.elapsedRealtime() when the shutter was pressed
+        public final long startedAt;
+        private volatile String savedPath;
+
+        Capture(long id, byte[] jpeg, int rotationDegrees, long startedAt) {
+            this.id = id;
+            this.jpeg = jpeg;
+            this.rotationDegrees = rotationDegrees;
+            this.startedAt = startedAt;
+        }
+
+        /**
+         * Path of the persisted JPEG, or null until the background write has finished.
+         */
+        public String getSavedPath() {
+            return savedPath;
+        }
+    }
+
+    private static final AtomicLong nextId = new AtomicLong(1);
+    private static final Map<Long, Capture> captures = new LinkedHashMap<>();
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor();
+
+    public static Capture put(byte[] jpeg, int rotationDegrees, long startedAt) {
+        Capture capture = new Capture(nextId.getAndIncrement(), jpeg, rotationDegrees, startedAt);
+        synchronized (captures) {
+            captures.put(capture.id, capture);
+            Iterator<Long> it = captures.keySet().iterator();
+            while (captures.size() > MAX_CAPTURES && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        return capture;
+    }
+
+    public static Capture get(long id) {
+        synchronized (captures) {
+            return captures.get(id);
+        }
+    }
+
+    public static void remove(long id) {
+        synchronized (captures) {
+            captures.remove(id);
+        }
+    }
+
+    /**
+     * Writes the capture to file in the background, then runs onSaved on the writer thread.
+     */
+    public static void persistAsync(Capture capture, File file, Runnable onSaved) {
+        writer.execute(() -> {
+            long start = SystemClock.elapsedRealtime();
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write(capture.jpeg);
+                out.getFD().sync();
+                capture.savedPath = file.getAbsolutePath();
+                Log.d(TAG, "Saved capture " + capture.id + " in " + (SystemClock.elapsedRealtime() - start) + "ms");
+                onSaved.run();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to save capture " + capture.id, e);
+            }
+        });
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.aiprescriptionreader;
+
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.text.format.DateFormat;
+import android.util.LruCache;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.EditText;
+import android.widget.ImageView;
+import android.widget.TextView;
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Saved scans, newest first, loaded a page at a time as the list scrolls. Typing in
+ * the search box restarts the list with the full-text query. Rows show the small
+ * thumbnail kept by {@link ImageStore}, never the full image.
+ */
+public class HistoryActivity extends AppCompatActivity {
+
+    private static final int PAGE_SIZE = 30;
+    private static final long SEARCH_DELAY_MS = 250;
+    private static final int THUMBNAIL_CACHE_BYTES = 4 * 1024 * 1024;
+
+    private EditText etSearch;
+    private TextView tvStatus;
+    private HistoryAdapter adapter;
+    private LinearLayoutManager layoutManager;
+
+    private ScanHistoryDatabase database;
+    private ImageStore imageStore;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor();
+    private final ExecutorService thumbnailLoader = Executors.newSingleThreadExecutor();
+    private final LruCache<String, Bitmap> thumbnails = new LruCache<String, Bitmap>(THUMBNAIL_CACHE_BYTES) {
+        @Override
+        protected int sizeOf(String key, Bitmap value) {
+            return value.getByteCount();
+        }
+    };
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable runSearch = this::restart;
+
+    private String query = "";
+    // Bumped on every restart so pages from an older query are dropped
+    private int generation;
+    private boolean loading, endReached;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_history);
+
+        database = ScanHistoryDatabase.getInstance(this);
+        imageStore = ImageStore.getInstance(this);
+        etSearch = findViewById(R.id.etHistorySearch);
+        tvStatus = findViewById(R.id.tvHistoryStatus);
+        RecyclerView rvHistory = findViewById(R.id.rvHistory);
+
+        adapter = new HistoryAdapter();
+        layoutManager = new LinearLayoutManager(this);
+        rvHistory.setLayoutManager(layoutManager);
+        rvHistory.setAdapter(adapter);
+        rvHistory.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (layoutManager.findLastVisibleItemPosition() >= adapter.getItemCount() - PAGE_SIZE / 3) {
+                    loadNextPage();
+                }
+            }
+        });
+
+        etSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                query = s.toString().trim();
+                handler.removeCallbacks(runSearch);
+                handler.postDelayed(runSearch, SEARCH_DELAY_MS);
+            }
+        });
+
+        restart();
+    }
+
+    private void restart() {
+        generation++;
+        loading = false;
+        endReached = false;
+        adapter.clear();
+        loadNextPage();
+    }
+
+    private void loadNextPage() {
+        if (loading || endReached) return;
+        loading = true;
+
+        final int requestGeneration = generation;
+        final String requestQuery = query;
+        final long beforeId = adapter.lastId();
+        loader.execute(() -> {
+            long startedAt = SystemClock.elapsedRealtime();
+            List<ScanHistoryDatabase.ScanRecord> page = database.page(requestQuery, beforeId, PAGE_SIZE);
+            long elapsed = SystemClock.elapsedRealtime() - startedAt;
+            runOnUiThread(() -> {
+                if (requestGeneration != generation || isFinishing()) return;
+                loading = false;
+                endReached = page.size() < PAGE_SIZE;
+                adapter.append(page);
+                tvStatus.setText(adapter.getItemCount() + (endReached ? "" : "+") + " scans"
+                        + (requestQuery.isEmpty() ? "" : " matching") + " · " + elapsed + "ms");
+            });
+        });
+    }
+
+    private void bindThumbnail(ImageView view, String imagePath) {
+        view.setTag(imagePath);
+        Bitmap cached = imagePath != null ? thumbnails.get(imagePath) : null;
+        view.setImageBitmap(cached);
+        if (cached != null || imagePath == null) return;
+
+        thumbnailLoader.execute(() -> {
+            File file = imageStore.loadThumbnail(imagePath);
+            if (file == null) return;
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+            Bitmap bitmap = BitmapFactory.decodeFile(file.getPath(), options);
+            if (bitmap == null) return;
+            runOnUiThread(() -> {
+                thumbnails.put(imagePath, bitmap);
+                // The row may have been recycled for another scan meanwhile
+                if (imagePath.equals(view.getTag())) view.setImageBitmap(bitmap);
+            });
+        });
+    }
+
+    /**
+     * Opens a scan from its saved text, which stays in the history after the image
+     * itself has been compacted away.
+     */
+    private void open(ScanHistoryDatabase.ScanRecord record) {
+        Intent intent = new Intent(this, ResultActivity.class);
+        intent.putExtra("scan_id", record.id);
+        intent.putExtra("confidence", record.confidence);
+        intent.putExtra("image_path", record.imagePath);
+        startActivity(intent);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        handler.removeCallbacks(runSearch);
+        loader.shutdownNow();
+        thumbnailLoader.shutdownNow();
+    }
+
+    private class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.Holder> {
+
+        private final List<ScanHistoryDatabase.ScanRecord> records = new ArrayList<>();
+
+        void clear() {
+            int size = records.size();
+            records.clear();
+            notifyItemRangeRemoved(0, size);
+        }
+
+        void append(List<ScanHistoryDatabase.ScanRecord> page) {
+            int start = records.size();
+            records.addAll(page);
+            notifyItemRangeInserted(start, page.size());
+        }
+
+        long lastId() {
+            return records.isEmpty() ? Long.MAX_VALUE : records.get(records.size() - 1).id;
+        }
+
+        @NonNull
+        @Override
+        public Holder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            View view = LayoutInflater.from(parent.getContext())
+                    .inflate(R.layout.item_scan_history, parent, false);
+            return new Holder(view);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull Holder holder, int position) {
+            ScanHistoryDatabase.ScanRecord record = records.get(position);
+            holder.tvDate.setText(DateFormat.format("dd MMM yyyy, HH:mm", record.createdAt)
+                    + " · " + record.confidence + "%");
+            holder.tvMedicines.setText(record.medicineCount > 0 ? record.medicines : "No medicines detected");
+            holder.tvSnippet.setText(record.snippet);
+            bindThumbnail(holder.ivThumbnail, record.imagePath);
+            holder.itemView.setOnClickListener(v -> open(record));
+        }
+
+        @Override
+        public int getItemCount() {
+            return records.size();
+        }
+
+        class Holder extends RecyclerView.ViewHolder {
+            final ImageView ivThumbnail;
+            final TextView tvDate, tvMedicines, tvSnippet;
+
+            Holder(View itemView) {
+                super(itemView);
+                ivThumbnail = itemView.findViewById(R.id.ivHistoryThumbnail);
+                tvDate = itemView.findViewById(R.id.tvHistoryDate);
+                tvMedicines = itemView.findViewById(R.id.tvHistoryMedicines);
+                tvSnippet = itemView.findViewById(R.id.tvHistorySnippet);
+            }
+        }
+    }
+}
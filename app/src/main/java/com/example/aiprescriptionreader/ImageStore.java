@@ -0,0 +1,311 @@
+package com.example.aiprescriptionreader;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prescription images on disk. Hands out collision-free file names, makes a small
+ * thumbnail of every saved image for the history list, and keeps the originals under
+ * a disk budget: when over it, the least recently used originals are first
+ * recompressed to the resolution OCR actually uses, then deleted. Last use is kept in
+ * the scan history; a deleted original's scan still opens from its saved text, and
+ * its thumbnail outlives it. All of this runs on one background thread.
+ */
+public class ImageStore {
+
+    private static final String TAG = "ImageStore";
+    public static final String PREF_BUDGET_MB = "image_budget_mb";
+    public static final int DEFAULT_BUDGET_MB = 300;
+
+    static final int THUMBNAIL_EDGE = 256;
+    private static final int THUMBNAIL_QUALITY = 70;
+    private static final int COMPACT_QUALITY = 80;
+    // The newest originals are never recompressed or evicted
+    private static final int KEEP_NEWEST = 20;
+
+    private static ImageStore instance;
+
+    public static synchronized ImageStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new ImageStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private final Context context;
+    private final File originals;
+    private final File thumbnails;
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final AtomicBoolean compactionQueued = new AtomicBoolean();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        r.run();
+    }, "image-store"));
+
+    private ImageStore(Context context) {
+        this.context = context;
+        File external = context.getExternalFilesDir("Prescriptions");
+        originals = external != null ? external : new File(context.getFilesDir(), "Prescriptions");
+        File externalThumbs = context.getExternalFilesDir("Thumbnails");
+        thumbnails = externalThumbs != null ? externalThumbs : new File(context.getFilesDir(), "Thumbnails");
+    }
+
+    public File getOriginalsDir() {
+        return originals;
+    }
+
+    /**
+     * A new, empty file for a capture. The name carries the time to the millisecond
+     * plus a per-process sequence, and the file is created here, so two captures can
+     * never be given the same file.
+     */
+    public File newImageFile() throws IOException {
+        if (!originals.isDirectory() && !originals.mkdirs()) {
+            throw new IOException("Could not create " + originals);
+        }
+        String stamp = new SimpleDateFormat("yyyyMMdd_HHmmss_SSS", Locale.US).format(new Date());
+        while (true) {
+            File file = new File(originals, "PRESCRIPTION_" + stamp + "_" + sequence.incrementAndGet() + ".jpg");
+            if (file.createNewFile()) return file;
+        }
+    }
+
+    public File thumbnailFor(String imagePath) {
+        return new File(thumbnails, new File(imagePath).getName());
+    }
+
+    /**
+     * The thumbnail for an image, made now if the image predates thumbnails, or null
+     * if neither exists any more. Does disk work, so not for the main thread.
+     */
+    public File loadThumbnail(String imagePath) {
+        File thumbnail = thumbnailFor(imagePath);
+        if (thumbnail.isFile()) return thumbnail;
+        File image = new File(imagePath);
+        if (!image.isFile()) return null;
+        try {
+            writeThumbnail(image);
+            return thumbnail;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Thumbnail failed for " + image.getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Makes the thumbnail for a newly written image, then compacts if over budget.
+     */
+    public void onImageSaved(File image) {
+        worker.execute(() -> {
+            try {
+                writeThumbnail(image);
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "Thumbnail failed for " + image.getName(), e);
+            }
+        });
+        compactAsync();
+    }
+
+    /**
+     * Marks an image as used now, so it is the last to be compacted.
+     */
+    public void touch(String imagePath) {
+        if (imagePath == null) return;
+        ScanHistoryDatabase.getInstance(context).touchAsync(imagePath);
+    }
+
+    /**
+     * Queues a compaction pass unless one is already waiting.
+     */
+    public void compactAsync() {
+        if (!compactionQueued.compareAndSet(false, true)) return;
+        worker.execute(() -> {
+            compactionQueued.set(false);
+            try {
+                compact();
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Compaction failed", e);
+            }
+        });
+    }
+
+    public long getBudgetBytes() {
+        int mb = context.getSharedPreferences("PrescriptionPrefs", Context.MODE_PRIVATE)
+                .getInt(PREF_BUDGET_MB, DEFAULT_BUDGET_MB);
+        return mb * 1024L * 1024L;
+    }
+
+    /**
+     * Bytes used by originals and by thumbnails.
+     */
+    public long[] usage() {
+        return new long[]{sizeOf(list(originals)), sizeOf(list(thumbnails))};
+    }
+
+    private void compact() {
+        long start = SystemClock.elapsedRealtime();
+        long budget = getBudgetBytes();
+        File[] images = list(originals);
+        File[] thumbs = list(thumbnails);
+        long used = sizeOf(images) + sizeOf(thumbs);
+        if (used <= budget) return;
+
+        // Least recently used first; an image not in the history yet was just taken
+        Arrays.sort(images, byLastUse(ScanHistoryDatabase.getInstance(context).lastUseTimes()));
+        int candidates = Math.max(0, images.length - KEEP_NEWEST);
+        int recompressed = 0, evicted = 0;
+        for (int i = 0; i < candidates && used > budget; i++) {
+            long before = images[i].length();
+            if (recompress(images[i])) {
+                used -= before - images[i].length();
+                recompressed++;
+            }
+        }
+        for (int i = 0; i < candidates && used > budget; i++) {
+            long size = images[i].length();
+            if (images[i].delete()) {
+                used -= size;
+                evicted++;
+            }
+        }
+        if (used > budget) {
+            Arrays.sort(thumbs, BY_LAST_MODIFIED);
+            for (int i = 0; i < thumbs.length && used > budget; i++) {
+                if (new File(originals, thumbs[i].getName()).exists()) continue;
+                long size = thumbs[i].length();
+                if (thumbs[i].delete()) used -= size;
+            }
+        }
+        Log.d(TAG, "Compacted in " + (SystemClock.elapsedRealtime() - start) + "ms: " + recompressed
+                + " recompressed, " + evicted + " evicted, " + used / 1024 + " KB of " + budget / 1024 + " KB");
+    }
+
+    /**
+     * Re-encodes an original at OCR resolution with its rotation applied, keeping its
+     * place in the LRU order. Returns false if it was already that small.
+     */
+    private boolean recompress(File image) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(image.getPath(), bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) return false;
+        // Already at OCR resolution; re-encoding again would only lose quality
+        if (Math.max(bounds.outWidth, bounds.outHeight) <= PrescriptionImageDecoder.OCR_MAX_EDGE) return false;
+
+        int rotation = PrescriptionImageDecoder.readRotation(image.getPath());
+        BitmapFactory.Options options = PrescriptionImageDecoder.sizedOptions(
+                bounds.outWidth, bounds.outHeight, PrescriptionImageDecoder.OCR_MAX_EDGE);
+        Bitmap decoded = BitmapFactory.decodeFile(image.getPath(), options);
+        if (decoded == null) return false;
+        Bitmap upright = PrescriptionImageDecoder.scaleAndRotate(decoded, PrescriptionImageDecoder.OCR_MAX_EDGE, rotation);
+        long lastModified = image.lastModified();
+        File tmp = new File(image.getPath() + ".tmp");
+        try {
+            writeJpeg(upright, tmp, COMPACT_QUALITY);
+            // Rename is atomic, so a reader sees either the old file or the new one
+            if (!tmp.renameTo(image)) throw new IOException("Could not replace " + image.getName());
+            image.setLastModified(lastModified);
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "Recompression failed for " + image.getName(), e);
+            tmp.delete();
+            return false;
+        } finally {
+            if (upright != decoded) upright.recycle();
+            decoded.recycle();
+        }
+    }
+
+    private void writeThumbnail(File image) throws IOException {
+        if (!thumbnails.isDirectory() && !thumbnails.mkdirs()) {
+            throw new IOException("Could not create " + thumbnails);
+        }
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(image.getPath(), bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) throw new IOException("Not an image");
+
+        BitmapFactory.Options options = PrescriptionImageDecoder.sizedOptions(
+                bounds.outWidth, bounds.outHeight, THUMBNAIL_EDGE);
+        Bitmap decoded = BitmapFactory.decodeFile(image.getPath(), options);
+        if (decoded == null) throw new IOException("Not an image");
+        Bitmap thumbnail = PrescriptionImageDecoder.scaleAndRotate(decoded, THUMBNAIL_EDGE,
+                PrescriptionImageDecoder.readRotation(image.getPath()));
+        File target = thumbnailFor(image.getPath());
+        File tmp = new File(target.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            writeJpeg(thumbnail, tmp, THUMBNAIL_QUALITY);
+            if (!tmp.renameTo(target)) throw new IOException("Could not write " + target.getName());
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        } finally {
+            if (thumbnail != decoded) thumbnail.recycle();
+            decoded.recycle();
+        }
+    }
+
+    private static void writeJpeg(Bitmap bitmap, File file, int quality) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            if (!bitmap.compress(Bitmap.CompressFormat.JPEG, quality, out)) {
+                throw new IOException("JPEG encoding failed");
+            }
+        }
+    }
+
+    private static File[] list(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) return new File[0];
+        int count = 0;
+        for (File file : files) {
+            if (file.isFile() && !file.getName().endsWith(".tmp")) files[count++] = file;
+        }
+        return Arrays.copyOf(files, count);
+    }
+
+    private static long sizeOf(File[] files) {
+        long total = 0;
+        for (File file : files) total += file.length();
+        return total;
+    }
+
+    private static Comparator<File> byLastUse(Map<String, Long> lastUse) {
+        return new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(lastUseOf(a, lastUse), lastUseOf(b, lastUse));
+            }
+        };
+    }
+
+    private static long lastUseOf(File file, Map<String, Long> lastUse) {
+        Long time = lastUse.get(file.getPath());
+        return time != null ? time : file.lastModified();
+    }
+
+    private static final Comparator<File> BY_LAST_MODIFIED = new Comparator<File>() {
+        @Override
+        public int compare(File a, File b) {
+            return Long.compare(a.lastModified(), b.lastModified());
+        }
+    };
+}
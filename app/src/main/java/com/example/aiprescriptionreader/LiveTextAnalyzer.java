@@ -0,0 +1,107 @@
+package com.example.aiprescriptionreader;
+
+import android.media.Image;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.camera.core.ExperimentalGetImage;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.ImageProxy;
+
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.text.Text;
+
+/**
+ * Runs recognition on preview frames. ImageAnalysis already keeps only the latest
+ * frame; on top of that at most one frame is in flight, and frames are skipped until
+ * SKIP_FACTOR times the measured recognizer latency has passed, so live OCR uses a
+ * bounded share of the CPU whatever the device speed.
+ */
+public class LiveTextAnalyzer implements ImageAnalysis.Analyzer {
+
+    private static final float SKIP_FACTOR = 1.5f;
+    private static final float LATENCY_SMOOTHING = 0.2f;
+    private static final int STABLE_FRAMES = 3;
+    private static final float STABLE_SIMILARITY = 0.85f;
+    private static final int MIN_WORDS = 4;
+
+    public interface Listener {
+        /**
+         * Called on the main thread with each frame's text.
+         */
+        void onFrameText(String text, int stableFrames, long latencyMs);
+
+        /**
+         * Called once on the main thread when the text has stopped changing.
+         */
+        void onStable(String text);
+    }
+
+    private final RecognitionService recognitionService;
+    private final Listener listener;
+    private final TextStabilityDetector stability =
+            new TextStabilityDetector(STABLE_FRAMES, STABLE_SIMILARITY, MIN_WORDS);
+
+    private volatile boolean busy;
+    private volatile boolean enabled = true;
+    private volatile boolean stableReported;
+    private volatile float averageLatencyMs;
+    private long lastStartedAt;
+    private int skippedFrames;
+
+    public LiveTextAnalyzer(RecognitionService recognitionService, Listener listener) {
+        this.recognitionService = recognitionService;
+        this.listener = listener;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Starts looking for a new stable view, e.g. after returning from a capture.
+     */
+    public void reset() {
+        stableReported = false;
+        stability.reset();
+    }
+
+    public int getSkippedFrames() {
+        return skippedFrames;
+    }
+
+    @Override
+    @ExperimentalGetImage
+    public void analyze(@NonNull ImageProxy imageProxy) {
+        long now = SystemClock.elapsedRealtime();
+        Image mediaImage = imageProxy.getImage();
+        if (!enabled || busy || mediaImage == null
+                || now - lastStartedAt < (long) (averageLatencyMs * SKIP_FACTOR)) {
+            skippedFrames++;
+            imageProxy.close();
+            return;
+        }
+
+        busy = true;
+        lastStartedAt = now;
+        InputImage image = InputImage.fromMediaImage(mediaImage, imageProxy.getImageInfo().getRotationDegrees());
+        recognitionService.process(image).addOnCompleteListener(task -> {
+            // Completion listeners run on the main thread
+            imageProxy.close();
+            long latency = SystemClock.elapsedRealtime() - now;
+            averageLatencyMs = averageLatencyMs == 0 ? latency
+                    : averageLatencyMs + LATENCY_SMOOTHING * (latency - averageLatencyMs);
+            busy = false;
+
+            if (!task.isSuccessful()) return;
+            Text visionText = task.getResult();
+            String text = visionText.getText();
+            boolean stable = stability.onFrame(text);
+            listener.onFrameText(text, stability.getStableFrames(), latency);
+            if (stable && !stableReported && enabled) {
+                stableReported = true;
+                listener.onStable(text);
+            }
+        });
+    }
+}
@@ -1,7 +1,6 @@
 package com.example.aiprescriptionreader;
 
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.widget.Button;
 import android.widget.TextView;
@@ -9,42 +8,46 @@ import androidx.appcompat.app.AppCompatActivity;
 
 public class MainActivity extends AppCompatActivity {
 
-    private Button btnStartScanner;
-    private TextView tvScansToday, tvAccuracy;
-    private SharedPreferences prefs;
+    private Button btnStartScanner, btnBatchScan, btnHistory;
+    private TextView tvScansToday, tvAccuracy, tvPerformance;
+    private ScanStatsStore stats;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
-        prefs = getSharedPreferences("PrescriptionPrefs", MODE_PRIVATE);
+        stats = ScanStatsStore.getInstance(this);
 
         btnStartScanner = findViewById(R.id.btnStartScanner);
+        btnBatchScan = findViewById(R.id.btnBatchScan);
+        btnHistory = findViewById(R.id.btnHistory);
         tvScansToday = findViewById(R.id.tvScansToday);
         tvAccuracy = findViewById(R.id.tvAccuracy);
+        tvPerformance = findViewById(R.id.tvPerformance);
 
         btnStartScanner.setOnClickListener(v -> {
             Intent intent = new Intent(MainActivity.this, ScannerActivity.class);
             startActivity(intent);
         });
 
+        btnBatchScan.setOnClickListener(v ->
+                startActivity(new Intent(MainActivity.this, BatchActivity.class)));
+
+        btnHistory.setOnClickListener(v ->
+                startActivity(new Intent(MainActivity.this, HistoryActivity.class)));
+
+        tvPerformance.setOnClickListener(v ->
+                startActivity(new Intent(MainActivity.this, PerformanceActivity.class)));
+
         updateStats();
     }
 
     private void updateStats() {
-        int scansToday = prefs.getInt("scans_today", 0);
-        int totalScans = prefs.getInt("total_scans", 0);
-        int successfulScans = prefs.getInt("successful_scans", 0);
-
-        tvScansToday.setText(String.valueOf(scansToday));
-
-        if (totalScans > 0) {
-            int accuracy = (successfulScans * 100) / totalScans;
-            tvAccuracy.setText(accuracy + "%");
-        } else {
-            tvAccuracy.setText("95%");
-        }
+        tvScansToday.setText(String.valueOf(stats.getScansToday()));
+
+        int accuracy = stats.getAccuracyPercent();
+        tvAccuracy.setText(accuracy >= 0 ? accuracy + "%" : "--");
     }
 
     @Override
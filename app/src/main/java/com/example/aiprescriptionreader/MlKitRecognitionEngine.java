@@ -0,0 +1,49 @@
+package com.example.aiprescriptionreader;
+
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.text.Text;
+
+/**
+ * ML Kit's on-device Latin recognizer on the shared {@link RecognitionService}. In
+ * adaptive mode it reads a downscaled copy first and re-reads only the weak lines at
+ * full resolution ({@link AdaptiveRecognizer}); otherwise it reads the full bitmap in
+ * one pass. Takes {@link BitmapPage}s.
+ */
+public class MlKitRecognitionEngine implements RecognitionEngine {
+
+    // One ML Kit Latin read of the whole bitmap at full resolution
+    static final String FULL_PASS = "mlkit-latin-full";
+
+    private final RecognitionService recognitionService;
+    private final AdaptiveRecognizer adaptiveRecognizer;
+    private final PerfMetrics metrics = PerfMetrics.getInstance();
+
+    /**
+     * @param adaptive low-resolution first pass with selective refinement
+     */
+    public MlKitRecognitionEngine(RecognitionService recognitionService, boolean adaptive) {
+        this.recognitionService = recognitionService;
+        this.adaptiveRecognizer = adaptive ? new AdaptiveRecognizer(recognitionService) : null;
+    }
+
+    @Override
+    public String name() {
+        return adaptiveRecognizer != null ? "mlkit-latin-adaptive" : FULL_PASS;
+    }
+
+    @Override
+    public RecognizedText recognize(Page page) throws Exception {
+        BitmapPage bitmapPage = (BitmapPage) page;
+        if (adaptiveRecognizer != null) {
+            return adaptiveRecognizer.recognize(bitmapPage.bitmap, page.rotationDegrees(), bitmapPage.signal);
+        }
+        if (bitmapPage.signal != null) bitmapPage.signal.throwIfCanceled();
+
+        long inputStart = System.nanoTime();
+        InputImage image = InputImage.fromBitmap(bitmapPage.bitmap, page.rotationDegrees());
+        metrics.record(PerfMetrics.Stage.INPUT_IMAGE, System.nanoTime() - inputStart,
+                page.width() * page.height(), 0);
+        Text visionText = recognitionService.recognize(image);
+        return OCRManager.toRecognizedText(visionText);
+    }
+}
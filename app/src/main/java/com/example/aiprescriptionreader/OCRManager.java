@@ -1,136 +1,302 @@
 package com.example.aiprescriptionreader;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
+import android.graphics.Rect;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.os.SystemClock;
+import android.util.Log;
 
-import androidx.annotation.NonNull;
-
-import com.google.android.gms.tasks.OnFailureListener;
-import com.google.android.gms.tasks.OnSuccessListener;
-import com.google.mlkit.vision.common.InputImage;
 import com.google.mlkit.vision.text.Text;
-import com.google.mlkit.vision.text.TextRecognition;
-import com.google.mlkit.vision.text.TextRecognizer;
-import com.google.mlkit.vision.text.latin.TextRecognizerOptions;
+import java.io.DataInputStream;
 import java.io.File;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 public class OCRManager {
 
+    private static final String TAG = "OCRManager";
+
     public interface OCRCallback {
         void onSuccess(String extractedText, int confidence);
         void onError(String error);
+
+        default void onTiming(RecognitionService.Timing timing) {
+        }
+
+        /**
+         * Display-sized, upright copy of the image, delivered before recognition starts.
+         * Called on a worker thread.
+         */
+        default void onImageDecoded(Bitmap preview) {
+        }
+
+        /**
+         * A medicine as soon as analysis finds it, before onAnalysis. Not called for a
+         * result served from the cache. Called on a worker thread.
+         */
+        default void onMedicine(Medicine medicine) {
+        }
+
+        /**
+         * Structured analysis of the recognized text, delivered just before onSuccess.
+         */
+        default void onAnalysis(PrescriptionAnalysis analysis) {
+        }
+
+        /**
+         * The request was cancelled; neither onSuccess nor onError follows.
+         */
+        default void onCancelled() {
+        }
     }
 
+    // Low-res pass first, then only weak lines again at full resolution
+    public static final String PREF_TWO_PASS = "two_pass_ocr";
+    // Grayscale, deskew and adaptive threshold before recognition
+    public static final String PREF_PREPROCESS = "preprocess_images";
+    // Escalation to a slower engine only starts if it is expected to finish within this
+    private static final long RECOGNITION_BUDGET_MS = 5000;
+
+    private static EngineChain twoPassEngines, singlePassEngines;
+
     private Context context;
-    private SharedPreferences prefs;
-    private ExecutorService executor;
+    private final ScanStatsStore stats;
+    private final RecognitionService recognitionService;
+    private final PrescriptionImageDecoder decoder = new PrescriptionImageDecoder(BitmapPool.getInstance());
+    private final OcrResultCache cache;
+    private final PerfMetrics metrics = PerfMetrics.getInstance();
+    private boolean released;
 
     public OCRManager(Context context) {
         this.context = context;
-        this.prefs = context.getSharedPreferences("PrescriptionPrefs", Context.MODE_PRIVATE);
-        this.executor = Executors.newSingleThreadExecutor();
+        this.stats = ScanStatsStore.getInstance(context);
+        this.recognitionService = RecognitionService.getInstance();
+        this.cache = OcrResultCache.getInstance(context);
+        recognitionService.acquire();
     }
 
-    public void processImage(String imagePath, OCRCallback callback) {
-        executor.execute(() -> {
-            try {
-                File file = new File(imagePath);
-                Bitmap bitmap = BitmapFactory.decodeFile(file.getAbsolutePath());
+    /**
+     * Lets the shared recognizer go idle once no other screen is using it.
+     */
+    public void release() {
+        if (!released) {
+            released = true;
+            recognitionService.release();
+        }
+    }
 
-                if (bitmap == null) {
-                    callback.onError("Failed to load image");
-                    return;
-                }
+    /**
+     * @param signal checked between pipeline stages; null if the request can't be cancelled
+     */
+    public void processImage(String imagePath, CancellationSignal signal, OCRCallback callback) {
+        process(new ImageSource() {
+            @Override
+            public byte[] bytes() throws IOException {
+                return readFile(new File(imagePath));
+            }
 
-                InputImage image = InputImage.fromBitmap(bitmap, 0);
-                TextRecognizer recognizer = TextRecognition.getClient(TextRecognizerOptions.DEFAULT_OPTIONS);
-
-                recognizer.process(image)
-                        .addOnSuccessListener(new OnSuccessListener<Text>() {
-                            @Override
-                            public void onSuccess(Text visionText) {
-                                String extractedText = visionText.getText();
-
-                                // Confidence calculation FIXED
-                                int confidence = calculateConfidence(visionText);
-                                updateStats();
-
-                                if (confidence > 70) {
-                                    updateSuccessfulScans();
-                                }
-
-                                callback.onSuccess(extractedText, confidence);
-                            }
-                        })
-                        .addOnFailureListener(new OnFailureListener() {
-                            @Override
-                            public void onFailure(@NonNull Exception e) {
-                                callback.onError("OCR failed: " + e.getMessage());
-                            }
-                        });
-
-            } catch (Exception e) {
-                callback.onError("Error: " + e.getMessage());
+            @Override
+            public int rotationDegrees() {
+                return PrescriptionImageDecoder.readRotation(imagePath);
             }
-        });
+        }, signal, callback);
     }
 
-    private int calculateConfidence(Text visionText) {
-        // ML Kit doesn't provide confidence per block in this version
-        // So we use a simple heuristic
+    /**
+     * Recognizes a capture straight from its in-memory JPEG, without touching disk.
+     */
+    public void processCapture(CaptureStore.Capture capture, CancellationSignal signal, OCRCallback callback) {
+        process(new ImageSource() {
+            @Override
+            public byte[] bytes() {
+                return capture.jpeg;
+            }
 
-        int textLength = visionText.getText().length();
+            @Override
+            public int rotationDegrees() {
+                return capture.rotationDegrees;
+            }
+        }, signal, callback);
+    }
 
-        if (textLength > 100) return 85;
-        else if (textLength > 50) return 80;
-        else if (textLength > 20) return 75;
-        else if (textLength > 10) return 70;
-        else return 65;
+    private interface ImageSource {
+        byte[] bytes() throws IOException;
+        int rotationDegrees();
     }
 
-    // Alternative: Count lines for confidence
-    private int calculateConfidenceByLines(Text visionText) {
-        int lineCount = 0;
-        for (Text.TextBlock block : visionText.getTextBlocks()) {
-            lineCount += block.getLines().size();
+    private void process(ImageSource source, CancellationSignal signal, OCRCallback callback) {
+        final long queuedAt = SystemClock.elapsedRealtime();
+        try {
+            recognitionService.execute(() -> runPipeline(source, queuedAt, signal, callback));
+        } catch (RejectedExecutionException e) {
+            callback.onError("Recognition queue is full");
         }
-
-        if (lineCount > 5) return 90;
-        else if (lineCount > 3) return 80;
-        else if (lineCount > 1) return 70;
-        else return 60;
     }
 
-    private void updateStats() {
-        SharedPreferences.Editor editor = prefs.edit();
+    /**
+     * Runs on a recognition worker: cache lookup by content hash and settings, then
+     * decode, ML Kit and analysis.
+     * A cancelled request stops at the next stage boundary.
+     */
+    private void runPipeline(ImageSource source, long queuedAt, CancellationSignal signal, OCRCallback callback) {
+        long startedAt = SystemClock.elapsedRealtime();
+        PrescriptionImageDecoder.DecodedImage decoded = null;
+        Bitmap preprocessed = null;
+        try {
+            throwIfCanceled(signal);
+            byte[] bytes = source.bytes();
+            String key = OcrResultCache.contentKey(bytes, cacheVariant());
+            OcrResultCache.Entry cached = cache.get(key);
+            if (cached != null) {
+                callback.onImageDecoded(decoder.decodeDisplay(bytes, source.rotationDegrees()));
+                deliver(cached, callback);
+                return;
+            }
+
+            long decodeStart = System.nanoTime();
+            decoded = decoder.decode(bytes, source.rotationDegrees());
+            int sourcePixels = decoded.sourceWidth * decoded.sourceHeight;
+            metrics.record(PerfMetrics.Stage.DECODE, System.nanoTime() - decodeStart, sourcePixels, 0);
+            callback.onImageDecoded(decoded.display);
+            throwIfCanceled(signal);
+            long dHash = OcrResultCache.dHash(decoded.ocr);
+            String similar = cache.findSimilar(dHash);
+            if (similar != null) Log.d(TAG, "Looks like cached scan " + similar + ", recognizing anyway");
 
-        long lastScanDate = prefs.getLong("last_scan_date", 0);
-        long currentDate = System.currentTimeMillis();
+            Bitmap ocrInput = decoded.ocr;
+            int ocrRotation = decoded.rotationDegrees;
+            int ocrPixels = ocrInput.getWidth() * ocrInput.getHeight();
+            if (isEnabled(PREF_PREPROCESS)) {
+                long preprocessStart = System.nanoTime();
+                preprocessed = decoder.preprocess(decoded);
+                metrics.record(PerfMetrics.Stage.PREPROCESS, System.nanoTime() - preprocessStart, ocrPixels, 0);
+                ocrInput = preprocessed;
+                ocrRotation = 0;
+            }
+
+            throwIfCanceled(signal);
+            long loadedAt = SystemClock.elapsedRealtime();
+            EngineChain engines = engineChain(recognitionService, isEnabled(PREF_TWO_PASS));
+            long recognizeStart = System.nanoTime();
+            EngineChain.Result recognized = engines.recognize(
+                    new BitmapPage(ocrInput, ocrRotation, key, signal), RECOGNITION_BUDGET_MS);
+            RecognizedText text = recognized.text;
+            metrics.record(PerfMetrics.Stage.RECOGNIZE, System.nanoTime() - recognizeStart,
+                    ocrPixels, text.getText().length());
+            Log.d(TAG, "Recognized with " + recognized);
+            long recognizedAt = SystemClock.elapsedRealtime();
+            callback.onTiming(new RecognitionService.Timing(
+                    startedAt - queuedAt, loadedAt - startedAt, recognizedAt - loadedAt));
 
-        java.util.Calendar cal1 = java.util.Calendar.getInstance();
-        java.util.Calendar cal2 = java.util.Calendar.getInstance();
-        cal1.setTimeInMillis(lastScanDate);
-        cal2.setTimeInMillis(currentDate);
+            throwIfCanceled(signal);
+            int confidence = recognized.confidence;
+            long analyzeStart = System.nanoTime();
+            PrescriptionAnalysis analysis = MedicineAnalyzer.analyze(text, callback::onMedicine);
+            metrics.record(PerfMetrics.Stage.ANALYZE, System.nanoTime() - analyzeStart,
+                    sourcePixels, text.getText().length());
+            OcrResultCache.Entry entry = new OcrResultCache.Entry(text, confidence, analysis);
+            cache.put(key, dHash, entry);
+            deliver(entry, callback);
+        } catch (OperationCanceledException e) {
+            Log.d(TAG, "OCR cancelled");
+            callback.onCancelled();
+        } catch (IOException e) {
+            callback.onError(e.getMessage());
+        } catch (Exception e) {
+            callback.onError("OCR failed: " + e.getMessage());
+        } finally {
+            if (preprocessed != null) decoder.recycle(preprocessed);
+            if (decoded != null) decoder.recycle(decoded);
+        }
+    }
 
-        if (cal1.get(java.util.Calendar.DAY_OF_YEAR) != cal2.get(java.util.Calendar.DAY_OF_YEAR)) {
-            editor.putInt("scans_today", 0);
-            editor.putLong("last_scan_date", currentDate);
+    /**
+     * Engines shared by every scan, so their latency estimates carry over. Two-pass
+     * tries the adaptive reader first and escalates to a full-resolution read when the
+     * result is weak and the budget allows.
+     */
+    private static synchronized EngineChain engineChain(RecognitionService service, boolean twoPass) {
+        if (twoPass) {
+            if (twoPassEngines == null) {
+                twoPassEngines = new EngineChain.Builder()
+                        .add(new MlKitRecognitionEngine(service, true), 800)
+                        .add(new MlKitRecognitionEngine(service, false), 2000)
+                        .build();
+            }
+            return twoPassEngines;
+        }
+        if (singlePassEngines == null) {
+            singlePassEngines = new EngineChain.Builder()
+                    .add(new MlKitRecognitionEngine(service, false), 2000)
+                    .build();
         }
+        return singlePassEngines;
+    }
+
+    private static void throwIfCanceled(CancellationSignal signal) {
+        if (signal != null) signal.throwIfCanceled();
+    }
+
+    private String cacheVariant() {
+        return cacheVariant(isEnabled(PREF_TWO_PASS), isEnabled(PREF_PREPROCESS));
+    }
+
+    /**
+     * Everything besides the image bytes that a cached result depends on: the current
+     * formulary and how the image was recognized.
+     */
+    static String cacheVariant(boolean twoPass, boolean preprocess) {
+        return MedicineAnalyzer.formularyVersion() + (twoPass ? "t" : "s") + (preprocess ? "p" : "r");
+    }
+
+    private boolean isEnabled(String pref) {
+        return context.getSharedPreferences("PrescriptionPrefs", Context.MODE_PRIVATE)
+                .getBoolean(pref, true);
+    }
+
+    private void deliver(OcrResultCache.Entry entry, OCRCallback callback) {
+        stats.recordScan(entry.confidence > 70);
+
+        callback.onAnalysis(entry.analysis);
+        callback.onSuccess(entry.text.getText(), entry.confidence);
+    }
 
-        int scansToday = prefs.getInt("scans_today", 0);
-        int totalScans = prefs.getInt("total_scans", 0);
+    static RecognizedText toRecognizedText(Text visionText) {
+        List<RecognizedText.Line> lines = new ArrayList<>();
+        List<Text.TextBlock> blocks = visionText.getTextBlocks();
+        for (int b = 0; b < blocks.size(); b++) {
+            for (Text.Line line : blocks.get(b).getLines()) {
+                List<RecognizedText.Element> elements = new ArrayList<>();
+                for (Text.Element element : line.getElements()) {
+                    Rect box = boxOf(element.getBoundingBox());
+                    elements.add(new RecognizedText.Element(element.getText(),
+                            box.left, box.top, box.right, box.bottom, element.getConfidence()));
+                }
+                Rect box = boxOf(line.getBoundingBox());
+                lines.add(new RecognizedText.Line(line.getText(), b,
+                        box.left, box.top, box.right, box.bottom, line.getConfidence(), elements));
+            }
+        }
+        return new RecognizedText(visionText.getText(), lines);
+    }
 
-        editor.putInt("scans_today", scansToday + 1);
-        editor.putInt("total_scans", totalScans + 1);
-        editor.apply();
+    private static Rect boxOf(Rect box) {
+        return box != null ? box : new Rect();
     }
 
-    private void updateSuccessfulScans() {
-        int successful = prefs.getInt("successful_scans", 0);
-        prefs.edit().putInt("successful_scans", successful + 1).apply();
+    private static byte[] readFile(File file) throws IOException {
+        if (!file.exists()) {
+            throw new IOException("Failed to load image");
+        }
+        byte[] data = new byte[(int) file.length()];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            in.readFully(data);
+        }
+        return data;
     }
-}
\ No newline at end of file
+}
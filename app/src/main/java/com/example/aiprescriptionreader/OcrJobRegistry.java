@@ -0,0 +1,270 @@
+package com.example.aiprescriptionreader;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * OCR jobs keyed by image, owned by the process rather than by a screen. A result
+ * screen that is re-created (rotation, other configuration changes) finds the job
+ * already running for its image and reattaches to it instead of decoding and
+ * recognizing again. When the screen is left for good the job is cancelled; the
+ * pipeline checks the job's CancellationSignal between stages and stops there.
+ * Interactions with recently scanned medicines are checked once per job, after the
+ * result, and replayed like everything else.
+ *
+ * Everything here, including listener calls, happens on the main thread.
+ */
+public class OcrJobRegistry {
+
+    private static final String TAG = "OcrJobRegistry";
+    // Finished jobs kept for screens that are being re-created
+    private static final int MAX_FINISHED = 4;
+    // How far back scanned medicines count towards interactions
+    private static final int HISTORY_DAYS = 90;
+
+    public interface Listener {
+        void onPreview(Bitmap preview);
+        void onMedicine(Medicine medicine);
+        void onResult(String text, int confidence, PrescriptionAnalysis analysis);
+        void onInteractions(List<InteractionChecker.Interaction> interactions);
+        void onError(String error);
+    }
+
+    private static OcrJobRegistry instance;
+
+    public static synchronized OcrJobRegistry getInstance(Context context) {
+        if (instance == null) {
+            instance = new OcrJobRegistry(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Oldest first, so the oldest finished job is dropped first
+    private final LinkedHashMap<String, Job> jobs = new LinkedHashMap<>();
+
+    private OcrJobRegistry(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * The job for this image file, started if there isn't one.
+     */
+    public Job startImage(String imagePath) {
+        String key = "file:" + imagePath;
+        Job job = jobs.get(key);
+        if (job == null) {
+            job = new Job(key, imagePath);
+            jobs.put(key, job);
+            job.manager = new OCRManager(context);
+            job.manager.processImage(imagePath, job.signal, job);
+        }
+        return job;
+    }
+
+    /**
+     * The job for this in-memory capture, started if there isn't one.
+     *
+     * @param imagePath where the capture is being saved, so its own history entry is
+     *                  not counted as an earlier scan
+     */
+    public Job startCapture(CaptureStore.Capture capture, String imagePath) {
+        String key = "capture:" + capture.id;
+        Job job = jobs.get(key);
+        if (job == null) {
+            job = new Job(key, imagePath);
+            jobs.put(key, job);
+            job.manager = new OCRManager(context);
+            job.manager.processCapture(capture, job.signal, job);
+        }
+        return job;
+    }
+
+    /**
+     * The job for a scan in the history, started if there isn't one. Nothing is
+     * recognized: the saved text is analyzed again and the thumbnail is the preview,
+     * so this works after the original image has been compacted away.
+     */
+    public Job startSaved(long scanId, int confidence, String imagePath) {
+        String key = "scan:" + scanId;
+        Job job = jobs.get(key);
+        if (job == null) {
+            Job saved = new Job(key, imagePath);
+            jobs.put(key, saved);
+            ScanHistoryDatabase.getInstance(context).textAsync(scanId, text -> {
+                if (saved.signal.isCanceled()) {
+                    saved.onCancelled();
+                    return;
+                }
+                if (text == null) {
+                    saved.onError("Scan no longer in history");
+                    return;
+                }
+                File thumbnail = imagePath != null ? ImageStore.getInstance(context).loadThumbnail(imagePath) : null;
+                if (thumbnail != null) {
+                    Bitmap preview = BitmapFactory.decodeFile(thumbnail.getPath());
+                    if (preview != null) saved.onImageDecoded(preview);
+                }
+                saved.onAnalysis(MedicineAnalyzer.analyze(text));
+                saved.onSuccess(text, confidence);
+            });
+            job = saved;
+        }
+        return job;
+    }
+
+    /**
+     * Cancels the job if it is still running and forgets it.
+     */
+    public void cancel(Job job) {
+        if (jobs.get(job.key) == job) jobs.remove(job.key);
+        job.listener = null;
+        if (!job.finished) {
+            Log.d(TAG, "Cancelling " + job.key);
+            job.signal.cancel();
+        }
+    }
+
+    private void trimFinished() {
+        int finished = 0;
+        for (Job job : jobs.values()) {
+            if (job.finished) finished++;
+        }
+        Iterator<Job> it = jobs.values().iterator();
+        while (finished > MAX_FINISHED && it.hasNext()) {
+            Job job = it.next();
+            if (job.finished && job.listener == null) {
+                it.remove();
+                finished--;
+            }
+        }
+    }
+
+    public class Job implements OCRManager.OCRCallback {
+        final String key;
+        final String imagePath;
+        final CancellationSignal signal = new CancellationSignal();
+        // Null for a saved scan, which is not recognized again
+        OCRManager manager;
+
+        // Main thread only
+        private Listener listener;
+        private Bitmap preview;
+        private final List<Medicine> medicines = new ArrayList<>();
+        private PrescriptionAnalysis analysis;
+        private List<InteractionChecker.Interaction> interactions;
+        private String text, error;
+        private int confidence;
+        private boolean finished;
+
+        Job(String key, String imagePath) {
+            this.key = key;
+            this.imagePath = imagePath;
+        }
+
+        /**
+         * Replaces the listener and replays whatever the job already has: the preview,
+         * the medicines found so far, then the result or error if it has finished, then
+         * the interactions once they are known.
+         */
+        public void attach(Listener listener) {
+            this.listener = listener;
+            if (preview != null) listener.onPreview(preview);
+            for (Medicine medicine : medicines) listener.onMedicine(medicine);
+            if (text != null) listener.onResult(text, confidence, analysis);
+            else if (error != null) listener.onError(error);
+            if (interactions != null) listener.onInteractions(interactions);
+        }
+
+        public void detach(Listener listener) {
+            if (this.listener == listener) this.listener = null;
+        }
+
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public void onImageDecoded(Bitmap bitmap) {
+            mainHandler.post(() -> {
+                preview = bitmap;
+                if (listener != null) listener.onPreview(bitmap);
+            });
+        }
+
+        @Override
+        public void onMedicine(Medicine medicine) {
+            mainHandler.post(() -> {
+                medicines.add(medicine);
+                if (listener != null) listener.onMedicine(medicine);
+            });
+        }
+
+        @Override
+        public void onAnalysis(PrescriptionAnalysis result) {
+            mainHandler.post(() -> analysis = result);
+        }
+
+        @Override
+        public void onSuccess(String extractedText, int confidence) {
+            mainHandler.post(() -> {
+                this.text = extractedText;
+                this.confidence = confidence;
+                finish();
+                if (listener != null) listener.onResult(extractedText, confidence, analysis);
+                checkInteractions();
+            });
+        }
+
+        @Override
+        public void onError(String message) {
+            mainHandler.post(() -> {
+                error = message;
+                finish();
+                if (listener != null) listener.onError(message);
+            });
+        }
+
+        @Override
+        public void onCancelled() {
+            mainHandler.post(this::finish);
+        }
+
+        /**
+         * Checks the medicines against each other and against those scanned in the
+         * last HISTORY_DAYS days.
+         */
+        private void checkInteractions() {
+            if (analysis == null || !analysis.hasMedicines()) return;
+            List<String> prescribed = new ArrayList<>();
+            for (Medicine medicine : analysis.getMedicines()) {
+                prescribed.add(medicine.getName());
+            }
+            ScanHistoryDatabase.getInstance(context).recentMedicinesAsync(HISTORY_DAYS, imagePath, history -> {
+                List<InteractionChecker.Interaction> found = InteractionChecker.getDefault().check(prescribed, history);
+                mainHandler.post(() -> {
+                    interactions = found;
+                    if (listener != null) listener.onInteractions(found);
+                });
+            });
+        }
+
+        private void finish() {
+            finished = true;
+            if (manager != null) manager.release();
+            trimFinished();
+        }
+    }
+}
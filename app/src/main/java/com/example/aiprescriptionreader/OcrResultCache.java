@@ -0,0 +1,393 @@
+package com.example.aiprescriptionreader;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Disk cache of OCR results keyed by the SHA-256 of the image bytes plus the settings
+ * the result depends on, so re-opening or re-sharing the same image skips decode and
+ * recognition entirely. Only an exact key returns a result.
+ *
+ * Each entry is one JSON file named {@code <key>_<dhash>.json}. The dHash is a 64-bit
+ * perceptual hash of the decoded image. It is only a hint: two different prescriptions
+ * on the same letterhead can hash alike, so a similar entry is reported but never
+ * served. The index is in access order and the least recently used entries are
+ * deleted once the total size passes the budget.
+ */
+public class OcrResultCache {
+
+    private static final String TAG = "OcrResultCache";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final long DEFAULT_MAX_BYTES = 20L * 1024 * 1024;
+    // Differing bits out of 64 still treated as the same image
+    private static final int NEAR_DUPLICATE_BITS = 4;
+
+    public static class Entry {
+        public final RecognizedText text;
+        public final int confidence;
+        public final PrescriptionAnalysis analysis;
+
+        public Entry(RecognizedText text, int confidence, PrescriptionAnalysis analysis) {
+            this.text = text;
+            this.confidence = confidence;
+            this.analysis = analysis;
+        }
+    }
+
+    private static class IndexEntry {
+        final File file;
+        final long dHash;
+        final long size;
+
+        IndexEntry(File file, long dHash, long size) {
+            this.file = file;
+            this.dHash = dHash;
+            this.size = size;
+        }
+    }
+
+    private static OcrResultCache instance;
+
+    public static synchronized OcrResultCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new OcrResultCache(new File(context.getCacheDir(), "ocr-cache"), DEFAULT_MAX_BYTES);
+        }
+        return instance;
+    }
+
+    private final File dir;
+    private final long maxBytes;
+    private final LinkedHashMap<String, IndexEntry> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private boolean loaded;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong similar = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public OcrResultCache(File dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param variant what else the result depends on (formulary, pipeline settings);
+     *                must not contain '_'
+     */
+    public static String contentKey(byte[] imageBytes, String variant) {
+        return sha256(imageBytes) + "-" + variant;
+    }
+
+    private static String sha256(byte[] imageBytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(imageBytes);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 64-bit difference hash: the image shrunk to 9x8 grey pixels, one bit per
+     * horizontal neighbour comparison. Robust to scaling and recompression.
+     */
+    public static long dHash(Bitmap bitmap) {
+        Bitmap small = Bitmap.createScaledBitmap(bitmap, 9, 8, true);
+        int[] pixels = new int[9 * 8];
+        small.getPixels(pixels, 0, 9, 0, 0, 9, 8);
+        if (small != bitmap) small.recycle();
+
+        long hash = 0;
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                hash <<= 1;
+                if (luminance(pixels[y * 9 + x]) > luminance(pixels[y * 9 + x + 1])) hash |= 1;
+            }
+        }
+        return hash;
+    }
+
+    private static int luminance(int argb) {
+        return (((argb >> 16) & 0xFF) * 299 + ((argb >> 8) & 0xFF) * 587 + (argb & 0xFF) * 114) / 1000;
+    }
+
+    /**
+     * Exact lookup by content key. Counts a hit or a miss.
+     */
+    public Entry get(String key) {
+        File file;
+        synchronized (this) {
+            ensureLoaded();
+            IndexEntry entry = index.get(key);
+            file = entry != null ? entry.file : null;
+        }
+        Entry result = file != null ? read(key, file) : null;
+        if (result != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * The key of an entry whose perceptual hash is within a few bits, or null. A hint
+     * that this looks like an earlier scan, not a result: the entry is not read and
+     * its place in the LRU order is left alone.
+     */
+    public String findSimilar(long dHash) {
+        String key = null;
+        synchronized (this) {
+            ensureLoaded();
+            int bestDistance = NEAR_DUPLICATE_BITS + 1;
+            for (Map.Entry<String, IndexEntry> e : index.entrySet()) {
+                int distance = Long.bitCount(e.getValue().dHash ^ dHash);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    key = e.getKey();
+                }
+            }
+        }
+        if (key != null) similar.incrementAndGet();
+        return key;
+    }
+
+    public void put(String key, long dHash, Entry entry) {
+        byte[] data;
+        try {
+            data = toJson(entry).toString().getBytes(UTF_8);
+        } catch (JSONException e) {
+            Log.w(TAG, "Could not serialize entry", e);
+            return;
+        }
+
+        File file = new File(dir, key + "_" + Long.toHexString(dHash) + ".json");
+        synchronized (this) {
+            ensureLoaded();
+            if (!dir.exists() && !dir.mkdirs()) return;
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write(data);
+            } catch (IOException e) {
+                Log.w(TAG, "Could not write " + file, e);
+                return;
+            }
+
+            IndexEntry previous = index.put(key, new IndexEntry(file, dHash, data.length));
+            if (previous != null) {
+                totalBytes -= previous.size;
+                if (!previous.file.equals(file)) previous.file.delete();
+            }
+            totalBytes += data.length;
+            evict();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getSimilar() {
+        return similar.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized long getSizeBytes() {
+        ensureLoaded();
+        return totalBytes;
+    }
+
+    public synchronized void clear() {
+        ensureLoaded();
+        for (IndexEntry entry : index.values()) {
+            entry.file.delete();
+        }
+        index.clear();
+        totalBytes = 0;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, IndexEntry>> it = index.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            IndexEntry entry = it.next().getValue();
+            entry.file.delete();
+            totalBytes -= entry.size;
+            it.remove();
+        }
+    }
+
+    /**
+     * Rebuilds the index from the directory, oldest files first so they are evicted first.
+     */
+    private void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File file : files) {
+            String name = file.getName();
+            int sep = name.indexOf('_');
+            if (sep < 0 || !name.endsWith(".json")) continue;
+            try {
+                long dHash = new BigInteger(name.substring(sep + 1, name.length() - 5), 16).longValue();
+                index.put(name.substring(0, sep), new IndexEntry(file, dHash, file.length()));
+                totalBytes += file.length();
+            } catch (NumberFormatException e) {
+                file.delete();
+            }
+        }
+        evict();
+    }
+
+    private Entry read(String key, File file) {
+        try (InputStream in = new FileInputStream(file)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, n);
+            }
+            file.setLastModified(System.currentTimeMillis());
+            return fromJson(new JSONObject(new String(bytes.toByteArray(), UTF_8)));
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Dropping unreadable entry " + file, e);
+            synchronized (this) {
+                IndexEntry entry = index.remove(key);
+                if (entry != null) {
+                    entry.file.delete();
+                    totalBytes -= entry.size;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static JSONObject toJson(Entry entry) throws JSONException {
+        JSONArray lines = new JSONArray();
+        for (RecognizedText.Line line : entry.text.getLines()) {
+            JSONArray elements = new JSONArray();
+            for (RecognizedText.Element element : line.elements) {
+                elements.put(new JSONObject()
+                        .put("t", element.text)
+                        .put("box", box(element.left, element.top, element.right, element.bottom))
+                        .put("c", element.confidence));
+            }
+            lines.put(new JSONObject()
+                    .put("t", line.text)
+                    .put("b", line.block)
+                    .put("box", box(line.left, line.top, line.right, line.bottom))
+                    .put("c", line.confidence)
+                    .put("e", elements));
+        }
+
+        JSONArray medicines = new JSONArray();
+        for (Medicine medicine : entry.analysis.getMedicines()) {
+            medicines.put(new JSONObject()
+                    .put("name", medicine.getName())
+                    .put("dosage", medicine.getDosage())
+                    .put("frequency", medicine.getFrequency())
+                    .put("duration", medicine.getDuration())
+                    .put("start", medicine.getStart())
+                    .put("end", medicine.getEnd())
+                    .put("score", medicine.getScore()));
+        }
+        JSONArray forms = new JSONArray();
+        for (DosageForm form : entry.analysis.getDosageForms()) {
+            forms.put(form.name());
+        }
+
+        return new JSONObject()
+                .put("text", entry.text.getText())
+                .put("confidence", entry.confidence)
+                .put("lines", lines)
+                .put("medicines", medicines)
+                .put("forms", forms)
+                .put("textLength", entry.analysis.getTextLength());
+    }
+
+    private static Entry fromJson(JSONObject json) throws JSONException {
+        List<RecognizedText.Line> lines = new ArrayList<>();
+        JSONArray jsonLines = json.getJSONArray("lines");
+        for (int i = 0; i < jsonLines.length(); i++) {
+            JSONObject line = jsonLines.getJSONObject(i);
+            List<RecognizedText.Element> elements = new ArrayList<>();
+            JSONArray jsonElements = line.getJSONArray("e");
+            for (int j = 0; j < jsonElements.length(); j++) {
+                JSONObject element = jsonElements.getJSONObject(j);
+                JSONArray box = element.getJSONArray("box");
+                elements.add(new RecognizedText.Element(element.getString("t"),
+                        box.getInt(0), box.getInt(1), box.getInt(2), box.getInt(3),
+                        (float) element.getDouble("c")));
+            }
+            JSONArray box = line.getJSONArray("box");
+            lines.add(new RecognizedText.Line(line.getString("t"), line.getInt("b"),
+                    box.getInt(0), box.getInt(1), box.getInt(2), box.getInt(3),
+                    (float) line.getDouble("c"), elements));
+        }
+
+        List<Medicine> medicines = new ArrayList<>();
+        JSONArray jsonMedicines = json.getJSONArray("medicines");
+        for (int i = 0; i < jsonMedicines.length(); i++) {
+            JSONObject m = jsonMedicines.getJSONObject(i);
+            medicines.add(new Medicine(m.getString("name"), optString(m, "dosage"),
+                    optString(m, "frequency"), optString(m, "duration"),
+                    m.getInt("start"), m.getInt("end"), (float) m.getDouble("score")));
+        }
+        Set<DosageForm> forms = EnumSet.noneOf(DosageForm.class);
+        JSONArray jsonForms = json.getJSONArray("forms");
+        for (int i = 0; i < jsonForms.length(); i++) {
+            forms.add(DosageForm.valueOf(jsonForms.getString(i)));
+        }
+
+        RecognizedText text = new RecognizedText(json.getString("text"), lines);
+        PrescriptionAnalysis analysis = new PrescriptionAnalysis(medicines, forms, json.getInt("textLength"));
+        return new Entry(text, json.getInt("confidence"), analysis);
+    }
+
+    private static JSONArray box(int left, int top, int right, int bottom) {
+        return new JSONArray().put(left).put(top).put(right).put(bottom);
+    }
+
+    private static String optString(JSONObject json, String name) {
+        return json.isNull(name) ? null : json.optString(name, null);
+    }
+}
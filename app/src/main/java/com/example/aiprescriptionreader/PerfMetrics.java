@@ -0,0 +1,236 @@
+package com.example.aiprescriptionreader;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Rolling per-stage latency samples for the scan path. Recording writes into a fixed
+ * ring per stage and allocates nothing; percentiles are only computed when someone
+ * asks for a summary.
+ */
+public class PerfMetrics {
+
+    public enum Stage { DECODE, PREPROCESS, INPUT_IMAGE, RECOGNIZE, ANALYZE, RENDER }
+
+    public static final int WINDOW = 256;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static PerfMetrics instance;
+
+    public static synchronized PerfMetrics getInstance() {
+        if (instance == null) {
+            instance = new PerfMetrics();
+        }
+        return instance;
+    }
+
+    private final Window[] windows = new Window[Stage.values().length];
+
+    PerfMetrics() {
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = new Window();
+        }
+    }
+
+    /**
+     * Records one sample. imagePixels and textLength are 0 when they don't apply.
+     */
+    public void record(Stage stage, long durationNanos, int imagePixels, int textLength) {
+        windows[stage.ordinal()].add(System.currentTimeMillis(), durationNanos, imagePixels, textLength);
+    }
+
+    public Summary summarize(Stage stage) {
+        return windows[stage.ordinal()].summarize(stage);
+    }
+
+    public List<Summary> summarize() {
+        List<Summary> summaries = new ArrayList<>();
+        for (Stage stage : Stage.values()) {
+            summaries.add(summarize(stage));
+        }
+        return summaries;
+    }
+
+    public void clear() {
+        for (Window window : windows) {
+            window.clear();
+        }
+    }
+
+    /**
+     * Summaries plus every sample in the current windows.
+     */
+    public JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("exportedAt", System.currentTimeMillis());
+        JSONArray stages = new JSONArray();
+        for (Stage stage : Stage.values()) {
+            Summary summary = summarize(stage);
+            JSONObject s = new JSONObject();
+            s.put("stage", stage.name());
+            s.put("count", summary.count);
+            s.put("p50Ms", summary.p50Ms);
+            s.put("p95Ms", summary.p95Ms);
+            s.put("p99Ms", summary.p99Ms);
+            s.put("maxMs", summary.maxMs);
+
+            JSONArray samples = new JSONArray();
+            for (Sample sample : windows[stage.ordinal()].samples()) {
+                samples.put(new JSONArray()
+                        .put(sample.at)
+                        .put(sample.durationNanos / 1e6)
+                        .put(sample.imagePixels)
+                        .put(sample.textLength));
+            }
+            s.put("samples", samples);
+            stages.put(s);
+        }
+        json.put("stages", stages);
+        return json;
+    }
+
+    /**
+     * One row per sample: stage, timestamp, duration, image pixels, text length.
+     */
+    public String toCsv() {
+        StringBuilder sb = new StringBuilder("stage,timestamp,duration_ms,image_pixels,text_length\n");
+        for (Stage stage : Stage.values()) {
+            for (Sample sample : windows[stage.ordinal()].samples()) {
+                sb.append(stage.name()).append(',')
+                        .append(sample.at).append(',')
+                        .append(String.format(Locale.US, "%.3f", sample.durationNanos / 1e6)).append(',')
+                        .append(sample.imagePixels).append(',')
+                        .append(sample.textLength).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes perf_metrics.json and perf_samples.csv into dir and returns the JSON file.
+     */
+    public File export(File dir) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        File json = new File(dir, "perf_metrics.json");
+        try {
+            write(json, toJson().toString(2));
+        } catch (JSONException e) {
+            throw new IOException("Could not encode metrics", e);
+        }
+        write(new File(dir, "perf_samples.csv"), toCsv());
+        return json;
+    }
+
+    private static void write(File file, String content) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(UTF_8));
+        }
+    }
+
+    public static class Summary {
+        public final Stage stage;
+        public final int count;
+        public final double p50Ms, p95Ms, p99Ms, maxMs;
+        public final long meanImagePixels;
+        public final int meanTextLength;
+
+        Summary(Stage stage, int count, double p50Ms, double p95Ms, double p99Ms, double maxMs,
+                long meanImagePixels, int meanTextLength) {
+            this.stage = stage;
+            this.count = count;
+            this.p50Ms = p50Ms;
+            this.p95Ms = p95Ms;
+            this.p99Ms = p99Ms;
+            this.maxMs = maxMs;
+            this.meanImagePixels = meanImagePixels;
+            this.meanTextLength = meanTextLength;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s n=%d p50=%.1fms p95=%.1fms p99=%.1fms max=%.1fms",
+                    stage, count, p50Ms, p95Ms, p99Ms, maxMs);
+        }
+    }
+
+    static class Sample {
+        final long at, durationNanos;
+        final int imagePixels, textLength;
+
+        Sample(long at, long durationNanos, int imagePixels, int textLength) {
+            this.at = at;
+            this.durationNanos = durationNanos;
+            this.imagePixels = imagePixels;
+            this.textLength = textLength;
+        }
+    }
+
+    private static class Window {
+        private final long[] at = new long[WINDOW];
+        private final long[] durations = new long[WINDOW];
+        private final int[] pixels = new int[WINDOW];
+        private final int[] textLengths = new int[WINDOW];
+        private int next, count;
+
+        synchronized void add(long time, long durationNanos, int imagePixels, int textLength) {
+            at[next] = time;
+            durations[next] = durationNanos;
+            pixels[next] = imagePixels;
+            textLengths[next] = textLength;
+            next = (next + 1) % WINDOW;
+            if (count < WINDOW) count++;
+        }
+
+        synchronized void clear() {
+            next = 0;
+            count = 0;
+        }
+
+        synchronized List<Sample> samples() {
+            List<Sample> samples = new ArrayList<>(count);
+            int first = (next - count + WINDOW) % WINDOW;
+            for (int i = 0; i < count; i++) {
+                int idx = (first + i) % WINDOW;
+                samples.add(new Sample(at[idx], durations[idx], pixels[idx], textLengths[idx]));
+            }
+            return samples;
+        }
+
+        Summary summarize(Stage stage) {
+            long[] sorted;
+            long pixelSum = 0, textSum = 0;
+            int n;
+            synchronized (this) {
+                n = count;
+                sorted = Arrays.copyOf(durations, n);
+                for (int i = 0; i < n; i++) {
+                    pixelSum += pixels[i];
+                    textSum += textLengths[i];
+                }
+            }
+            if (n == 0) return new Summary(stage, 0, 0, 0, 0, 0, 0, 0);
+            Arrays.sort(sorted);
+            return new Summary(stage, n, percentile(sorted, 50), percentile(sorted, 95),
+                    percentile(sorted, 99), sorted[n - 1] / 1e6, pixelSum / n, (int) (textSum / n));
+        }
+
+        // Nearest-rank percentile in milliseconds
+        private static double percentile(long[] sorted, int p) {
+            int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+            return sorted[Math.max(0, rank - 1)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.aiprescriptionreader;
+
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.widget.Button;
+import android.widget.Switch;
+import android.widget.TextView;
+import android.widget.Toast;
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Developer screen with per-stage scan latency, OCR cache counters and start-up warm-up.
+ */
+public class PerformanceActivity extends AppCompatActivity {
+
+    private TextView tvStats;
+    private PerfMetrics metrics;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_performance);
+
+        metrics = PerfMetrics.getInstance();
+        tvStats = findViewById(R.id.tvPerfStats);
+        Button btnExport = findViewById(R.id.btnPerfExport);
+        Button btnClear = findViewById(R.id.btnPerfClear);
+
+        SharedPreferences prefs = getSharedPreferences("PrescriptionPrefs", MODE_PRIVATE);
+        Switch switchTwoPass = findViewById(R.id.switchTwoPass);
+        switchTwoPass.setChecked(prefs.getBoolean(OCRManager.PREF_TWO_PASS, true));
+        switchTwoPass.setOnCheckedChangeListener((button, checked) ->
+                prefs.edit().putBoolean(OCRManager.PREF_TWO_PASS, checked).apply());
+        Switch switchPreprocess = findViewById(R.id.switchPreprocess);
+        switchPreprocess.setChecked(prefs.getBoolean(OCRManager.PREF_PREPROCESS, true));
+        switchPreprocess.setOnCheckedChangeListener((button, checked) ->
+                prefs.edit().putBoolean(OCRManager.PREF_PREPROCESS, checked).apply());
+
+        btnExport.setOnClickListener(v -> export());
+        btnClear.setOnClickListener(v -> {
+            metrics.clear();
+            showStats();
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showStats();
+    }
+
+    private void showStats() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "%-12s %5s %8s %8s %8s\n", "stage", "n", "p50", "p95", "p99"));
+        for (PerfMetrics.Summary s : metrics.summarize()) {
+            sb.append(String.format(Locale.US, "%-12s %5d %7.1fms %7.1fms %7.1fms\n",
+                    s.stage.name(), s.count, s.p50Ms, s.p95Ms, s.p99Ms));
+        }
+
+        PerfMetrics.Summary recognize = metrics.summarize(PerfMetrics.Stage.RECOGNIZE);
+        if (recognize.count > 0) {
+            sb.append(String.format(Locale.US, "\nAvg OCR input: %.1f MP, %d chars\n",
+                    recognize.meanImagePixels / 1e6, recognize.meanTextLength));
+        }
+
+        OcrResultCache cache = OcrResultCache.getInstance(this);
+        sb.append(String.format(Locale.US, "\nOCR cache: %d hits, %d misses (%d similar), %d KB\n",
+                cache.getHits(), cache.getMisses(), cache.getSimilar(), cache.getSizeBytes() / 1024));
+        ImageStore images = ImageStore.getInstance(this);
+        long[] usage = images.usage();
+        sb.append(String.format(Locale.US, "Images: %d KB originals, %d KB thumbnails, budget %d MB\n",
+                usage[0] / 1024, usage[1] / 1024, images.getBudgetBytes() / (1024 * 1024)));
+        sb.append('\n').append(AppWarmup.getReport()).append('\n');
+        tvStats.setText(sb.toString());
+    }
+
+    private void export() {
+        File dir = getExternalFilesDir("perf");
+        if (dir == null) dir = new File(getFilesDir(), "perf");
+        try {
+            File file = metrics.export(dir);
+            Toast.makeText(this, "Exported to " + file.getParent(), Toast.LENGTH_LONG).show();
+        } catch (IOException e) {
+            Toast.makeText(this, "Export failed: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.aiprescriptionreader;
+
+import android.app.Application;
+
+public class PrescriptionApp extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        AppWarmup.start(this);
+        ImageStore.getInstance(this).compactAsync();
+    }
+}
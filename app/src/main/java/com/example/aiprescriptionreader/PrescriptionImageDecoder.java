@@ -0,0 +1,263 @@
+package com.example.aiprescriptionreader;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Decodes a captured JPEG once, at a size chosen for OCR, and derives the small
+ * display bitmap from that instead of decoding the file a second time.
+ *
+ * The OCR copy is capped at OCR_MAX_EDGE on its long side. ML Kit needs roughly
+ * 16-24 px per character for Latin text; on a full prescription page the smallest
+ * print is about 1/80 of the page height, so ~2000 px keeps it legible while a
+ * 50 MP capture shrinks by an order of magnitude before it ever reaches the heap.
+ */
+public class PrescriptionImageDecoder {
+
+    private static final String TAG = "ImageDecoder";
+    public static final int OCR_MAX_EDGE = 2048;
+    public static final int DISPLAY_MAX_EDGE = 1080;
+
+    public static class DecodedImage {
+        // Upright, display-sized copy owned by the caller
+        public final Bitmap display;
+        // As stored in the file; rotate by rotationDegrees to make it upright
+        public final Bitmap ocr;
+        public final int rotationDegrees;
+        public final int sourceWidth, sourceHeight;
+
+        DecodedImage(Bitmap display, Bitmap ocr, int rotationDegrees, int sourceWidth, int sourceHeight) {
+            this.display = display;
+            this.ocr = ocr;
+            this.rotationDegrees = rotationDegrees;
+            this.sourceWidth = sourceWidth;
+            this.sourceHeight = sourceHeight;
+        }
+    }
+
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+    // Shared by every decoder; one page is preprocessed at a time, using all cores
+    private static ImagePreprocessor preprocessor;
+    private static int[] preprocessPixels = new int[0];
+
+    private final BitmapPool pool;
+
+    public PrescriptionImageDecoder(BitmapPool pool) {
+        this.pool = pool;
+    }
+
+    public DecodedImage decode(String path) throws IOException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Failed to load image");
+        }
+
+        BitmapFactory.Options options = sizedOptions(bounds.outWidth, bounds.outHeight, OCR_MAX_EDGE);
+        Bitmap ocr = decodeWithReuse(path, null, options);
+        if (ocr == null) {
+            throw new IOException("Failed to load image");
+        }
+
+        int rotation = readRotation(path);
+        Bitmap display = scaleAndRotate(ocr, DISPLAY_MAX_EDGE, rotation);
+        return new DecodedImage(display, ocr, rotation, bounds.outWidth, bounds.outHeight);
+    }
+
+    public DecodedImage decode(byte[] jpeg, int rotationDegrees) throws IOException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Failed to load image");
+        }
+
+        BitmapFactory.Options options = sizedOptions(bounds.outWidth, bounds.outHeight, OCR_MAX_EDGE);
+        Bitmap ocr = decodeWithReuse(null, jpeg, options);
+        if (ocr == null) {
+            throw new IOException("Failed to load image");
+        }
+
+        Bitmap display = scaleAndRotate(ocr, DISPLAY_MAX_EDGE, rotationDegrees);
+        return new DecodedImage(display, ocr, rotationDegrees, bounds.outWidth, bounds.outHeight);
+    }
+
+    /**
+     * Display copy only, for when the OCR result is already known.
+     */
+    public Bitmap decodeDisplay(byte[] jpeg, int rotationDegrees) throws IOException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Failed to load image");
+        }
+
+        BitmapFactory.Options options = sizedOptions(bounds.outWidth, bounds.outHeight, DISPLAY_MAX_EDGE);
+        Bitmap bitmap = BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, options);
+        if (bitmap == null) {
+            throw new IOException("Failed to load image");
+        }
+        if (rotationDegrees == 0) return bitmap;
+
+        Bitmap rotated = scaleAndRotate(bitmap, DISPLAY_MAX_EDGE, rotationDegrees);
+        bitmap.recycle();
+        return rotated;
+    }
+
+    /**
+     * Returns the OCR bitmap's buffer to the pool once recognition is done with it.
+     */
+    public void recycle(DecodedImage image) {
+        pool.put(image.ocr);
+    }
+
+    /**
+     * Upright, deskewed and binarized copy of the OCR bitmap, to be recognized with
+     * rotation 0. Hand it back with {@link #recycle(Bitmap)}.
+     */
+    public Bitmap preprocess(DecodedImage image) {
+        synchronized (PrescriptionImageDecoder.class) {
+            if (preprocessor == null) {
+                preprocessor = new ImagePreprocessor(preprocessExecutor(), CORES);
+            }
+            Bitmap source = image.ocr;
+            int width = source.getWidth(), height = source.getHeight();
+            if (preprocessPixels.length < width * height) {
+                preprocessPixels = new int[width * height];
+            }
+            source.getPixels(preprocessPixels, 0, width, 0, 0, width, height);
+
+            ImagePreprocessor.Result result = preprocessor.process(preprocessPixels, width, height,
+                    image.rotationDegrees, ImagePreprocessor.Mode.BINARY);
+            ImagePreprocessor.toArgb(result.pixels, preprocessPixels, result.width * result.height);
+
+            Bitmap out = pool.get(result.width, result.height, Bitmap.Config.ARGB_8888);
+            if (out != null) {
+                out.reconfigure(result.width, result.height, Bitmap.Config.ARGB_8888);
+            } else {
+                out = Bitmap.createBitmap(result.width, result.height, Bitmap.Config.ARGB_8888);
+            }
+            out.setPixels(preprocessPixels, 0, result.width, 0, 0, result.width, result.height);
+            if (result.skewDegrees != 0) {
+                Log.d(TAG, "Deskewed by " + result.skewDegrees + " degrees");
+            }
+            return out;
+        }
+    }
+
+    public void recycle(Bitmap bitmap) {
+        pool.put(bitmap);
+    }
+
+    /**
+     * Drops the preprocessing scratch buffers; called once recognition goes idle.
+     */
+    static void trimPreprocessor() {
+        synchronized (PrescriptionImageDecoder.class) {
+            if (preprocessor != null) preprocessor.trim();
+            preprocessPixels = new int[0];
+        }
+    }
+
+    private static ExecutorService preprocessExecutor() {
+        return Executors.newFixedThreadPool(Math.max(1, CORES - 1), r -> {
+            Thread thread = new Thread(r, "preprocess");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Power-of-two subsampling down to no less than maxEdge, then density scaling for
+     * the remaining factor, so the decoder emits the target size in a single pass.
+     */
+    static BitmapFactory.Options sizedOptions(int width, int height, int maxEdge) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inMutable = true;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+
+        int longEdge = Math.max(width, height);
+        int sampleSize = 1;
+        while (longEdge / (sampleSize * 2) >= maxEdge) {
+            sampleSize *= 2;
+        }
+        options.inSampleSize = sampleSize;
+
+        int sampledEdge = longEdge / sampleSize;
+        if (sampledEdge > maxEdge) {
+            options.inScaled = true;
+            options.inDensity = sampledEdge;
+            options.inTargetDensity = maxEdge;
+        }
+        return options;
+    }
+
+    private Bitmap decodeWithReuse(String path, byte[] data, BitmapFactory.Options options) {
+        int[] size = outputSize(path, data, options);
+        Bitmap reusable = pool.get(size[0], size[1], options.inPreferredConfig);
+        options.inBitmap = reusable;
+        try {
+            return decode(path, data, options);
+        } catch (IllegalArgumentException e) {
+            // The pooled buffer did not fit after all; decode into a fresh one
+            Log.w(TAG, "inBitmap reuse failed", e);
+            if (reusable != null) pool.put(reusable);
+            options.inBitmap = null;
+            return decode(path, data, options);
+        }
+    }
+
+    private static Bitmap decode(String path, byte[] data, BitmapFactory.Options options) {
+        return path != null ? BitmapFactory.decodeFile(path, options)
+                : BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
+
+    private static int[] outputSize(String path, byte[] data, BitmapFactory.Options options) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        bounds.inSampleSize = options.inSampleSize;
+        decode(path, data, bounds);
+        int width = bounds.outWidth, height = bounds.outHeight;
+        if (options.inScaled && options.inDensity > 0) {
+            width = (int) (width * (float) options.inTargetDensity / options.inDensity + 0.5f);
+            height = (int) (height * (float) options.inTargetDensity / options.inDensity + 0.5f);
+        }
+        return new int[]{width, height};
+    }
+
+    static Bitmap scaleAndRotate(Bitmap source, int maxEdge, int rotationDegrees) {
+        float scale = Math.min(1f, (float) maxEdge / Math.max(source.getWidth(), source.getHeight()));
+        Matrix matrix = new Matrix();
+        matrix.postScale(scale, scale);
+        if (rotationDegrees != 0) matrix.postRotate(rotationDegrees);
+        return Bitmap.createBitmap(source, 0, 0, source.getWidth(), source.getHeight(), matrix, true);
+    }
+
+    static int readRotation(String path) {
+        try {
+            ExifInterface exif = new ExifInterface(path);
+            switch (exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL)) {
+                case ExifInterface.ORIENTATION_ROTATE_90:
+                    return 90;
+                case ExifInterface.ORIENTATION_ROTATE_180:
+                    return 180;
+                case ExifInterface.ORIENTATION_ROTATE_270:
+                    return 270;
+                default:
+                    return 0;
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read EXIF from " + path, e);
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.aiprescriptionreader;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.text.Text;
+import com.google.mlkit.vision.text.TextRecognition;
+import com.google.mlkit.vision.text.TextRecognizer;
+import com.google.mlkit.vision.text.latin.TextRecognizerOptions;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide text recognition. Holds one warm ML Kit recognizer and a small bounded
+ * worker pool shared by every screen. Users {@link #acquire()} it and {@link #release()}
+ * it when done; once nobody holds it for IDLE_TIMEOUT_MS the recognizer is closed and
+ * the workers stop, and the next acquire brings them back.
+ */
+public class RecognitionService {
+
+    private static final String TAG = "RecognitionService";
+    private static final int WORKERS = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1));
+    private static final int QUEUE_CAPACITY = 16;
+    private static final long IDLE_TIMEOUT_MS = 60_000;
+
+    /**
+     * Where a request's time went: waiting for a worker, preparing the image,
+     * and inside ML Kit.
+     */
+    public static class Timing {
+        public final long queueMs, loadMs, recognizeMs;
+
+        public Timing(long queueMs, long loadMs, long recognizeMs) {
+            this.queueMs = queueMs;
+            this.loadMs = loadMs;
+            this.recognizeMs = recognizeMs;
+        }
+
+        public long totalMs() {
+            return queueMs + loadMs + recognizeMs;
+        }
+
+        @Override
+        public String toString() {
+            return "queue=" + queueMs + "ms load=" + loadMs + "ms recognize=" + recognizeMs + "ms";
+        }
+    }
+
+    private static RecognitionService instance;
+
+    public static synchronized RecognitionService getInstance() {
+        if (instance == null) {
+            instance = new RecognitionService();
+        }
+        return instance;
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable closeIfIdle = this::closeIfIdle;
+    private int users;
+    private TextRecognizer recognizer;
+    private ThreadPoolExecutor workers;
+
+    private RecognitionService() {
+    }
+
+    public synchronized void acquire() {
+        users++;
+        mainHandler.removeCallbacks(closeIfIdle);
+    }
+
+    public synchronized void release() {
+        if (users == 0) return;
+        users--;
+        if (users == 0) {
+            mainHandler.postDelayed(closeIfIdle, IDLE_TIMEOUT_MS);
+        }
+    }
+
+    /**
+     * Shared recognizer, created on first use.
+     */
+    public synchronized TextRecognizer getRecognizer() {
+        if (recognizer == null) {
+            recognizer = TextRecognition.getClient(TextRecognizerOptions.DEFAULT_OPTIONS);
+        }
+        return recognizer;
+    }
+
+    /**
+     * Runs recognition on the shared recognizer from the caller's thread.
+     */
+    public Task<Text> process(InputImage image) {
+        return getRecognizer().process(image);
+    }
+
+    /**
+     * Recognizes on the calling thread, blocking until ML Kit is done. Must not be
+     * called from the main thread.
+     */
+    public Text recognize(InputImage image) throws ExecutionException, InterruptedException {
+        return Tasks.await(process(image));
+    }
+
+    /**
+     * Runs a task on the shared workers.
+     *
+     * @throws RejectedExecutionException when the queue is full
+     */
+    public void execute(Runnable task) {
+        getWorkers().execute(task);
+    }
+
+    private synchronized ThreadPoolExecutor getWorkers() {
+        if (workers == null || workers.isShutdown()) {
+            workers = new ThreadPoolExecutor(WORKERS, WORKERS, 30, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY), new WorkerFactory());
+            workers.allowCoreThreadTimeOut(true);
+        }
+        return workers;
+    }
+
+    private synchronized void closeIfIdle() {
+        if (users > 0) return;
+        if (workers != null) {
+            if (workers.getActiveCount() > 0 || !workers.getQueue().isEmpty()) {
+                mainHandler.postDelayed(closeIfIdle, IDLE_TIMEOUT_MS);
+                return;
+            }
+            workers.shutdown();
+            workers = null;
+        }
+        if (recognizer != null) {
+            final TextRecognizer toClose = recognizer;
+            recognizer = null;
+            toClose.close();
+        }
+        PrescriptionImageDecoder.trimPreprocessor();
+        Log.d(TAG, "Closed idle recognizer");
+    }
+
+    private static class WorkerFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                r.run();
+            }, "ocr-worker-" + count.incrementAndGet());
+        }
+    }
+}
@@ -5,28 +5,62 @@ import android.content.ClipboardManager;
 import android.content.Context;
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.LayoutInflater;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
-import androidx.cardview.widget.CardView;
-import java.io.File;
+import androidx.recyclerview.widget.ConcatAdapter;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The result of one scan. Everything scrolls in a single RecyclerView: the image and
+ * headings are fixed sections, the extracted text is split into pages, and medicines
+ * are cards added as analysis finds them, so only what is on screen is laid out
+ * however long the prescription is.
+ */
 public class ResultActivity extends AppCompatActivity {
 
     private ImageView ivPrescription;
-    private TextView tvConfidence, tvResult, tvAnalysis;
+    private TextView tvConfidence, tvAnalysisHeadline, tvAnalysisSummary;
     private ProgressBar progressBar;
-    private CardView cardAnalysis;
     private Button btnCopy, btnShare, btnRescan;
 
-    private OCRManager ocrManager;
+    private SectionAdapter analysisHeader, analysisSummary;
+    private TextPageAdapter textPages;
+    private MedicineAdapter medicineAdapter;
+
+    private static final String TAG = "ResultActivity";
+    // Characters of extracted text per page; a page is one recycled view
+    private static final int PAGE_CHARS = 1500;
+
+    private static final String STATE_RESULT_HANDLED = "result_handled";
+
+    private OcrJobRegistry.Job job;
+    private boolean resultHandled;
     private String imagePath;
+    private CaptureStore.Capture capture;
+    // A scan opened from the history, shown from its saved text
+    private long scanId;
+    private long captureStartedAt;
+    private String extractedText = "";
+    private String summary = "";
+    private final List<Medicine> medicines = new ArrayList<>();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -34,22 +68,49 @@ public class ResultActivity extends AppCompatActivity {
         setContentView(R.layout.activity_result);
 
         imagePath = getIntent().getStringExtra("image_path");
+        long captureId = getIntent().getLongExtra("capture_id", -1);
+        if (captureId >= 0) {
+            capture = CaptureStore.get(captureId);
+        }
+        captureStartedAt = capture != null ? capture.startedAt
+                : getIntent().getLongExtra("capture_started_at", -1);
+        scanId = getIntent().getLongExtra("scan_id", -1);
+        // A saved scan is already in the history and was counted when it was taken
+        resultHandled = scanId >= 0
+                || savedInstanceState != null && savedInstanceState.getBoolean(STATE_RESULT_HANDLED);
+        if (savedInstanceState == null) {
+            ImageStore.getInstance(this).touch(imagePath);
+        }
 
         initializeViews();
-        loadImage();
         startOCR();
     }
 
     private void initializeViews() {
-        ivPrescription = findViewById(R.id.ivPrescription);
-        tvConfidence = findViewById(R.id.tvConfidence);
-        tvResult = findViewById(R.id.tvResult);
-        tvAnalysis = findViewById(R.id.tvAnalysis);
-        progressBar = findViewById(R.id.progressBar);
-        cardAnalysis = findViewById(R.id.cardAnalysis);
-        btnCopy = findViewById(R.id.btnCopy);
-        btnShare = findViewById(R.id.btnShare);
-        btnRescan = findViewById(R.id.btnRescan);
+        RecyclerView rvResult = findViewById(R.id.rvResult);
+        LayoutInflater inflater = LayoutInflater.from(this);
+
+        View header = inflater.inflate(R.layout.result_header, rvResult, false);
+        ivPrescription = header.findViewById(R.id.ivPrescription);
+        tvConfidence = header.findViewById(R.id.tvConfidence);
+        progressBar = header.findViewById(R.id.progressBar);
+
+        View analysis = inflater.inflate(R.layout.result_analysis_header, rvResult, false);
+        tvAnalysisHeadline = analysis.findViewById(R.id.tvAnalysisHeadline);
+        tvAnalysisSummary = (TextView) inflater.inflate(R.layout.result_analysis_summary, rvResult, false);
+
+        View footer = inflater.inflate(R.layout.result_footer, rvResult, false);
+        btnCopy = footer.findViewById(R.id.btnCopy);
+        btnShare = footer.findViewById(R.id.btnShare);
+        btnRescan = footer.findViewById(R.id.btnRescan);
+
+        textPages = new TextPageAdapter();
+        medicineAdapter = new MedicineAdapter();
+        analysisHeader = new SectionAdapter(analysis, false);
+        analysisSummary = new SectionAdapter(tvAnalysisSummary, false);
+        rvResult.setLayoutManager(new LinearLayoutManager(this));
+        rvResult.setAdapter(new ConcatAdapter(new SectionAdapter(header, true), textPages,
+                analysisHeader, medicineAdapter, analysisSummary, new SectionAdapter(footer, true)));
 
         btnCopy.setOnClickListener(v -> copyText());
         btnShare.setOnClickListener(v -> shareResults());
@@ -59,63 +120,277 @@ public class ResultActivity extends AppCompatActivity {
         });
     }
 
-    private void loadImage() {
-        try {
-            File file = new File(imagePath);
-            if (file.exists()) {
-                Bitmap bitmap = BitmapFactory.decodeFile(file.getAbsolutePath());
-                ivPrescription.setImageBitmap(bitmap);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
+    /**
+     * Attaches to the OCR job for this image, starting it unless a previous instance
+     * of this screen already did.
+     */
+    private void startOCR() {
+        progressBar.setVisibility(View.VISIBLE);
+        textPages.setText("Scanning prescription...");
+
+        OcrJobRegistry registry = OcrJobRegistry.getInstance(this);
+        if (scanId >= 0) {
+            job = registry.startSaved(scanId, getIntent().getIntExtra("confidence", 0), imagePath);
+        } else if (capture != null) {
+            job = registry.startCapture(capture, imagePath);
+        } else {
+            job = registry.startImage(imagePath);
         }
+        job.attach(jobListener);
     }
 
-    private void startOCR() {
-        progressBar.setVisibility(View.VISIBLE);
-        tvResult.setText("Scanning prescription...");
+    private final OcrJobRegistry.Listener jobListener = new OcrJobRegistry.Listener() {
+        @Override
+        public void onPreview(Bitmap preview) {
+            ivPrescription.setImageBitmap(preview);
+        }
 
-        ocrManager = new OCRManager(this);
-        ocrManager.processImage(imagePath, new OCRManager.OCRCallback() {
-            @Override
-            public void onSuccess(String extractedText, int confidence) {
-                runOnUiThread(() -> {
-                    progressBar.setVisibility(View.GONE);
-                    tvResult.setText(extractedText);
-                    tvConfidence.setText("Confidence: " + confidence + "%");
-
-                    String analysis = MedicineAnalyzer.analyzePrescription(extractedText);
-                    tvAnalysis.setText(analysis);
-                    cardAnalysis.setVisibility(View.VISIBLE);
-
-                    Toast.makeText(ResultActivity.this, "Scan successful!", Toast.LENGTH_SHORT).show();
-                });
-            }
+        @Override
+        public void onMedicine(Medicine medicine) {
+            medicines.add(medicine);
+            medicineAdapter.submitList(new ArrayList<>(medicines));
+            tvAnalysisHeadline.setText("Analyzing... " + medicines.size() + " found so far");
+            analysisHeader.setVisible(true);
+        }
 
-            @Override
-            public void onError(String error) {
-                runOnUiThread(() -> {
-                    progressBar.setVisibility(View.GONE);
-                    tvResult.setText("Error: " + error);
-                    Toast.makeText(ResultActivity.this, "Scan failed", Toast.LENGTH_SHORT).show();
-                });
-            }
-        });
+        @Override
+        public void onResult(String text, int confidence, PrescriptionAnalysis analysis) {
+            progressBar.setVisibility(View.GONE);
+            tvConfidence.setText("Confidence: " + confidence + "%");
+
+            PrescriptionAnalysis result = analysis != null ? analysis
+                    : MedicineAnalyzer.analyze(text);
+            long renderStart = System.nanoTime();
+            extractedText = text;
+            textPages.setText(text);
+            medicines.clear();
+            medicines.addAll(result.getMedicines());
+            medicineAdapter.submitList(new ArrayList<>(medicines));
+            tvAnalysisHeadline.setText(AnalysisRenderer.renderHeadline(result));
+            summary = "📋 Summary:\n" + AnalysisRenderer.renderSummary(result);
+            tvAnalysisSummary.setText(summary);
+            analysisHeader.setVisible(true);
+            analysisSummary.setVisible(true);
+            PerfMetrics.getInstance().record(PerfMetrics.Stage.RENDER,
+                    System.nanoTime() - renderStart, 0, text.length());
+
+            // A re-created screen shows the result again but doesn't count it again
+            if (resultHandled) return;
+            resultHandled = true;
+            logCaptureLatency();
+            ScanHistoryDatabase.getInstance(ResultActivity.this)
+                    .saveAsync(imagePath, text, confidence, result);
+            Toast.makeText(ResultActivity.this, "Scan successful!", Toast.LENGTH_SHORT).show();
+        }
+
+        @Override
+        public void onInteractions(List<InteractionChecker.Interaction> interactions) {
+            tvAnalysisSummary.setText(summary + "\n" + AnalysisRenderer.renderInteractions(interactions));
+        }
+
+        @Override
+        public void onError(String error) {
+            progressBar.setVisibility(View.GONE);
+            textPages.setText("Error: " + error);
+            if (resultHandled) return;
+            resultHandled = true;
+            Toast.makeText(ResultActivity.this, "Scan failed", Toast.LENGTH_SHORT).show();
+        }
+    };
+
+    private void logCaptureLatency() {
+        if (captureStartedAt < 0) return;
+        long latency = SystemClock.elapsedRealtime() - captureStartedAt;
+        Log.i(TAG, "Capture to result (" + (capture != null ? "in-memory" : "file") + "): " + latency + "ms");
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putBoolean(STATE_RESULT_HANDLED, resultHandled);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (job != null) {
+            job.detach(jobListener);
+            // Kept across a configuration change, cancelled when the user leaves
+            if (isFinishing()) OcrJobRegistry.getInstance(this).cancel(job);
+        }
+        if (capture != null && isFinishing()) {
+            CaptureStore.remove(capture.id);
+        }
     }
 
     private void copyText() {
         ClipboardManager clipboard = (ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
-        ClipData clip = ClipData.newPlainText("Prescription", tvResult.getText());
+        ClipData clip = ClipData.newPlainText("Prescription", extractedText);
         clipboard.setPrimaryClip(clip);
         Toast.makeText(this, "Text copied", Toast.LENGTH_SHORT).show();
     }
 
     private void shareResults() {
-        String textToShare = "Prescription Scan:\n\n" + tvResult.getText();
+        String textToShare = "Prescription Scan:\n\n" + extractedText;
 
         Intent shareIntent = new Intent(Intent.ACTION_SEND);
         shareIntent.setType("text/plain");
         shareIntent.putExtra(Intent.EXTRA_TEXT, textToShare);
         startActivity(Intent.createChooser(shareIntent, "Share Prescription"));
     }
-}
\ No newline at end of file
+
+    /**
+     * Splits text into pages of at most maxChars, breaking after a newline where
+     * there is one.
+     */
+    static List<String> paginate(String text, int maxChars) {
+        List<String> pages = new ArrayList<>();
+        int start = 0;
+        while (text.length() - start > maxChars) {
+            int end = text.lastIndexOf('\n', start + maxChars - 1);
+            end = end > start ? end + 1 : start + maxChars;
+            pages.add(text.substring(start, end));
+            start = end;
+        }
+        if (start < text.length() || pages.isEmpty()) pages.add(text.substring(start));
+        return pages;
+    }
+
+    /**
+     * One view that is shown or not, for the fixed parts of the screen. Its holder is
+     * never recycled, so the view is only ever in one place.
+     */
+    private static class SectionAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+
+        private final View view;
+        private boolean visible;
+
+        SectionAdapter(View view, boolean visible) {
+            this.view = view;
+            this.visible = visible;
+        }
+
+        void setVisible(boolean visible) {
+            if (this.visible == visible) return;
+            this.visible = visible;
+            if (visible) notifyItemInserted(0);
+            else notifyItemRemoved(0);
+        }
+
+        @NonNull
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            RecyclerView.ViewHolder holder = new RecyclerView.ViewHolder(view) {
+            };
+            holder.setIsRecyclable(false);
+            return holder;
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+        }
+
+        @Override
+        public int getItemCount() {
+            return visible ? 1 : 0;
+        }
+    }
+
+    private static class TextPageAdapter extends RecyclerView.Adapter<TextPageAdapter.Holder> {
+
+        private List<String> pages = new ArrayList<>();
+
+        void setText(String text) {
+            int oldSize = pages.size();
+            pages = paginate(text, PAGE_CHARS);
+            notifyItemRangeChanged(0, Math.min(oldSize, pages.size()));
+            if (pages.size() > oldSize) notifyItemRangeInserted(oldSize, pages.size() - oldSize);
+            else if (pages.size() < oldSize) notifyItemRangeRemoved(pages.size(), oldSize - pages.size());
+        }
+
+        @NonNull
+        @Override
+        public Holder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            View view = LayoutInflater.from(parent.getContext())
+                    .inflate(R.layout.item_result_text_page, parent, false);
+            return new Holder(view);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull Holder holder, int position) {
+            holder.tvPage.setText(pages.get(position));
+            // Pages join up into one block, padded only at its top and bottom
+            float density = holder.itemView.getResources().getDisplayMetrics().density;
+            int inner = Math.round(15 * density);
+            boolean first = position == 0, last = position == pages.size() - 1;
+            holder.tvPage.setPadding(inner, first ? inner : 0, inner, last ? inner : 0);
+            holder.itemView.setPadding(holder.itemView.getPaddingLeft(), 0,
+                    holder.itemView.getPaddingRight(), last ? Math.round(25 * density) : 0);
+        }
+
+        @Override
+        public int getItemCount() {
+            return pages.size();
+        }
+
+        static class Holder extends RecyclerView.ViewHolder {
+            final TextView tvPage;
+
+            Holder(View itemView) {
+                super(itemView);
+                tvPage = itemView.findViewById(R.id.tvResultPage);
+            }
+        }
+    }
+
+    /**
+     * Medicine cards. Lists are diffed off the main thread, so a card is only bound
+     * when it is new or changed.
+     */
+    private static class MedicineAdapter extends ListAdapter<Medicine, MedicineAdapter.Holder> {
+
+        MedicineAdapter() {
+            super(DIFF);
+        }
+
+        @NonNull
+        @Override
+        public Holder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            View view = LayoutInflater.from(parent.getContext())
+                    .inflate(R.layout.item_medicine, parent, false);
+            return new Holder(view);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull Holder holder, int position) {
+            Medicine medicine = getItem(position);
+            holder.tvName.setText("💊 " + medicine.getName() + (medicine.isFuzzyMatch() ? " (closest match)" : ""));
+            holder.tvDetails.setText(AnalysisRenderer.renderMedicineDetails(medicine));
+        }
+
+        static class Holder extends RecyclerView.ViewHolder {
+            final TextView tvName, tvDetails;
+
+            Holder(View itemView) {
+                super(itemView);
+                tvName = itemView.findViewById(R.id.tvMedicineName);
+                tvDetails = itemView.findViewById(R.id.tvMedicineDetails);
+            }
+        }
+
+        private static final DiffUtil.ItemCallback<Medicine> DIFF = new DiffUtil.ItemCallback<Medicine>() {
+            @Override
+            public boolean areItemsTheSame(@NonNull Medicine a, @NonNull Medicine b) {
+                return a.getStart() == b.getStart() && a.getName().equals(b.getName());
+            }
+
+            @Override
+            public boolean areContentsTheSame(@NonNull Medicine a, @NonNull Medicine b) {
+                return Objects.equals(a.getDosage(), b.getDosage())
+                        && Objects.equals(a.getFrequency(), b.getFrequency())
+                        && Objects.equals(a.getDuration(), b.getDuration())
+                        && a.getScore() == b.getScore();
+            }
+        };
+    }
+}
@@ -0,0 +1,330 @@
+package com.example.aiprescriptionreader;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Saved scans. Each scan's text and medicine line are also indexed in an FTS4 table
+ * keyed by the scan id, so a search is an index lookup joined back to the scan rows.
+ * Pages are fetched by id (keyset), so loading page 500 costs the same as page 1.
+ */
+public class ScanHistoryDatabase extends SQLiteOpenHelper {
+
+    private static final String TAG = "ScanHistoryDatabase";
+    private static final String DB_NAME = "scan_history.db";
+    private static final int DB_VERSION = 2;
+    private static final int SNIPPET_LENGTH = 160;
+
+    private static ScanHistoryDatabase instance;
+
+    public static synchronized ScanHistoryDatabase getInstance(Context context) {
+        if (instance == null) {
+            instance = new ScanHistoryDatabase(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> new Thread(r, "history-writer"));
+
+    private ScanHistoryDatabase(Context context) {
+        super(context, DB_NAME, null, DB_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE scans ("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "created_at INTEGER NOT NULL, "
+                + "image_path TEXT, "
+                + "text TEXT NOT NULL, "
+                + "confidence INTEGER NOT NULL, "
+                + "medicine_count INTEGER NOT NULL, "
+                + "medicines TEXT NOT NULL, "
+                + "last_used_at INTEGER)");
+        db.execSQL("CREATE UNIQUE INDEX scans_image_path ON scans(image_path)");
+        db.execSQL("CREATE TABLE medicines ("
+                + "scan_id INTEGER NOT NULL REFERENCES scans(id) ON DELETE CASCADE, "
+                + "name TEXT NOT NULL, "
+                + "dosage TEXT, "
+                + "frequency TEXT, "
+                + "duration TEXT)");
+        db.execSQL("CREATE INDEX medicines_name ON medicines(name, scan_id)");
+        db.execSQL("CREATE VIRTUAL TABLE scans_fts USING fts4(text, medicines)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            db.execSQL("ALTER TABLE scans ADD COLUMN last_used_at INTEGER");
+        }
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.setForeignKeyConstraintsEnabled(true);
+    }
+
+    /**
+     * Saves a scan on the history writer thread. A scan of an image that is already
+     * in the history is not saved twice.
+     */
+    public void saveAsync(String imagePath, String text, int confidence, PrescriptionAnalysis analysis) {
+        writer.execute(() -> {
+            try {
+                insert(imagePath, text, confidence, analysis);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Failed to save scan", e);
+            }
+        });
+    }
+
+    /**
+     * Returns the new row id, or the existing one when imagePath is already saved.
+     */
+    public long insert(String imagePath, String text, int confidence, PrescriptionAnalysis analysis) {
+        SQLiteDatabase db = getWritableDatabase();
+        if (imagePath != null) {
+            try (Cursor c = db.rawQuery("SELECT id FROM scans WHERE image_path = ?", new String[]{imagePath})) {
+                if (c.moveToFirst()) return c.getLong(0);
+            }
+        }
+
+        List<Medicine> medicines = analysis != null ? analysis.getMedicines() : new ArrayList<Medicine>();
+        String medicineLine = medicineLine(medicines);
+
+        db.beginTransaction();
+        try {
+            long now = System.currentTimeMillis();
+            ContentValues scan = new ContentValues();
+            scan.put("created_at", now);
+            scan.put("last_used_at", now);
+            scan.put("image_path", imagePath);
+            scan.put("text", text);
+            scan.put("confidence", confidence);
+            scan.put("medicine_count", medicines.size());
+            scan.put("medicines", medicineLine);
+            long id = db.insertOrThrow("scans", null, scan);
+
+            for (Medicine medicine : medicines) {
+                ContentValues row = new ContentValues();
+                row.put("scan_id", id);
+                row.put("name", medicine.getName().toLowerCase(Locale.ROOT));
+                row.put("dosage", medicine.getDosage());
+                row.put("frequency", medicine.getFrequency());
+                row.put("duration", medicine.getDuration());
+                db.insertOrThrow("medicines", null, row);
+            }
+
+            ContentValues fts = new ContentValues();
+            fts.put("docid", id);
+            fts.put("text", searchable(text));
+            fts.put("medicines", searchable(medicineLine));
+            db.insertOrThrow("scans_fts", null, fts);
+
+            db.setTransactionSuccessful();
+            return id;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Most recent scans older than beforeId (use Long.MAX_VALUE for the first page).
+     * A non-empty query restricts the page to scans whose text or medicines contain
+     * every query word, each matched as a prefix.
+     */
+    public List<ScanRecord> page(String query, long beforeId, int limit) {
+        String match = toMatchQuery(query);
+        String columns = "s.id, s.created_at, s.image_path, substr(s.text, 1, " + SNIPPET_LENGTH + "), "
+                + "s.confidence, s.medicine_count, s.medicines";
+        String sql;
+        String[] args;
+        if (match == null) {
+            sql = "SELECT " + columns + " FROM scans s WHERE s.id < ? ORDER BY s.id DESC LIMIT " + limit;
+            args = new String[]{String.valueOf(beforeId)};
+        } else {
+            sql = "SELECT " + columns + " FROM scans_fts JOIN scans s ON s.id = scans_fts.docid "
+                    + "WHERE scans_fts MATCH ? AND s.id < ? ORDER BY s.id DESC LIMIT " + limit;
+            args = new String[]{match, String.valueOf(beforeId)};
+        }
+
+        List<ScanRecord> records = new ArrayList<>();
+        try (Cursor c = getReadableDatabase().rawQuery(sql, args)) {
+            while (c.moveToNext()) {
+                records.add(new ScanRecord(c.getLong(0), c.getLong(1), c.getString(2), c.getString(3),
+                        c.getInt(4), c.getInt(5), c.getString(6)));
+            }
+        }
+        return records;
+    }
+
+    public interface NamesCallback {
+        void onNames(List<String> names);
+    }
+
+    /**
+     * Distinct medicine names from scans of the last {@code days} days, other than the
+     * scan of excludeImagePath. Runs after any pending saves; the callback is invoked on
+     * the history thread.
+     */
+    public void recentMedicinesAsync(int days, String excludeImagePath, NamesCallback callback) {
+        writer.execute(() -> {
+            List<String> names = new ArrayList<>();
+            long since = System.currentTimeMillis() - days * 24L * 60 * 60 * 1000;
+            try (Cursor c = getReadableDatabase().rawQuery("SELECT DISTINCT m.name FROM medicines m "
+                            + "JOIN scans s ON s.id = m.scan_id "
+                            + "WHERE s.created_at >= ? AND (s.image_path IS NULL OR s.image_path != ?)",
+                    new String[]{String.valueOf(since), excludeImagePath != null ? excludeImagePath : ""})) {
+                while (c.moveToNext()) {
+                    names.add(c.getString(0));
+                }
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Failed to read medicine history", e);
+            }
+            callback.onNames(names);
+        });
+    }
+
+    /**
+     * Records that the scan of imagePath was opened just now, on the history thread.
+     */
+    public void touchAsync(String imagePath) {
+        writer.execute(() -> {
+            try {
+                ContentValues values = new ContentValues();
+                values.put("last_used_at", System.currentTimeMillis());
+                getWritableDatabase().update("scans", values, "image_path = ?", new String[]{imagePath});
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Failed to touch scan", e);
+            }
+        });
+    }
+
+    /**
+     * When each saved image was last opened, or saved if never opened since, by path.
+     */
+    public Map<String, Long> lastUseTimes() {
+        Map<String, Long> times = new HashMap<>();
+        try (Cursor c = getReadableDatabase().rawQuery("SELECT image_path, COALESCE(last_used_at, created_at) "
+                + "FROM scans WHERE image_path IS NOT NULL", null)) {
+            while (c.moveToNext()) {
+                times.put(c.getString(0), c.getLong(1));
+            }
+        }
+        return times;
+    }
+
+    public interface TextCallback {
+        void onText(String text);
+    }
+
+    /**
+     * The saved text of a scan, or null if it is gone, read after any pending saves.
+     * The callback is invoked on the history thread.
+     */
+    public void textAsync(long id, TextCallback callback) {
+        writer.execute(() -> {
+            String text = null;
+            try {
+                text = getText(id);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Failed to read scan " + id, e);
+            }
+            callback.onText(text);
+        });
+    }
+
+    public int count() {
+        try (Cursor c = getReadableDatabase().rawQuery("SELECT COUNT(*) FROM scans", null)) {
+            return c.moveToFirst() ? c.getInt(0) : 0;
+        }
+    }
+
+    public String getText(long id) {
+        try (Cursor c = getReadableDatabase().rawQuery("SELECT text FROM scans WHERE id = ?",
+                new String[]{String.valueOf(id)})) {
+            return c.moveToFirst() ? c.getString(0) : null;
+        }
+    }
+
+    /**
+     * "Amoxicillin 500mg, Paracetamol 650mg" — the medicines as one searchable line.
+     */
+    private static String medicineLine(List<Medicine> medicines) {
+        StringBuilder sb = new StringBuilder();
+        for (Medicine medicine : medicines) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(medicine.getName());
+            if (medicine.getDosage() != null) sb.append(' ').append(medicine.getDosage());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Splits digits from letters so "500mg" and "500 mg" index the same tokens; the
+     * default FTS tokenizer would keep "500mg" as one word.
+     */
+    static String searchable(String text) {
+        StringBuilder sb = new StringBuilder(text.length() + 16);
+        char prev = ' ';
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c) && Character.isLetterOrDigit(prev)
+                    && Character.isDigit(c) != Character.isDigit(prev)) {
+                sb.append(' ');
+            }
+            sb.append(c);
+            prev = c;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Turns free text into an FTS query: every word must match, as a prefix. Returns
+     * null when nothing searchable is left.
+     */
+    static String toMatchQuery(String query) {
+        if (query == null) return null;
+        StringBuilder sb = new StringBuilder();
+        for (String word : searchable(query).split("[^\\p{L}\\p{Nd}]+")) {
+            if (word.isEmpty()) continue;
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(word.toLowerCase(Locale.ROOT)).append('*');
+        }
+        return sb.length() > 0 ? sb.toString() : null;
+    }
+
+    public static class ScanRecord {
+        public final long id;
+        public final long createdAt;
+        public final String imagePath;
+        // First SNIPPET_LENGTH characters of the text
+        public final String snippet;
+        public final int confidence;
+        public final int medicineCount;
+        public final String medicines;
+
+        ScanRecord(long id, long createdAt, String imagePath, String snippet,
+                   int confidence, int medicineCount, String medicines) {
+            this.id = id;
+            this.createdAt = createdAt;
+            this.imagePath = imagePath;
+            this.snippet = snippet;
+            this.confidence = confidence;
+            this.medicineCount = medicineCount;
+            this.medicines = medicines;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.aiprescriptionreader;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.TimeZone;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Scan counters kept in memory and written to disk in the background a few seconds
+ * after they change, so recording a scan is a couple of CAS operations.
+ *
+ * The last DAYS days are kept in a ring of buckets. Each bucket packs its local epoch
+ * day, scan count and success count into one long, so rolling over to a new day and
+ * counting a scan happen in the same atomic update.
+ */
+public class ScanStatsStore {
+
+    private static final String TAG = "ScanStatsStore";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String FILE_NAME = "scan_stats.json";
+
+    public static final int DAYS = 30;
+    private static final long FLUSH_DELAY_MS = 5_000;
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    // bucket = day << 40 | scans << 20 | successes
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private static ScanStatsStore instance;
+
+    public static synchronized ScanStatsStore getInstance(Context context) {
+        if (instance == null) {
+            Context app = context.getApplicationContext();
+            instance = new ScanStatsStore(new File(app.getFilesDir(), FILE_NAME));
+            instance.load(app.getSharedPreferences("PrescriptionPrefs", Context.MODE_PRIVATE));
+        }
+        return instance;
+    }
+
+    private final File file;
+    private final AtomicLongArray buckets = new AtomicLongArray(DAYS);
+    private final AtomicLong totalScans = new AtomicLong();
+    private final AtomicLong successfulScans = new AtomicLong();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "scan-stats-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    ScanStatsStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Counts one finished scan. Safe to call from any thread.
+     */
+    public void recordScan(boolean successful) {
+        totalScans.incrementAndGet();
+        if (successful) successfulScans.incrementAndGet();
+
+        long day = today();
+        int slot = (int) (day % DAYS);
+        while (true) {
+            long current = buckets.get(slot);
+            long scans = 1, successes = successful ? 1 : 0;
+            if (dayOf(current) == day) {
+                scans += Math.min(scansOf(current), COUNT_MASK - 1);
+                successes += Math.min(successesOf(current), COUNT_MASK - 1);
+            }
+            if (buckets.compareAndSet(slot, current, pack(day, scans, successes))) break;
+        }
+
+        if (flushScheduled.compareAndSet(false, true)) {
+            flusher.schedule(this::flush, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public long getTotalScans() {
+        return totalScans.get();
+    }
+
+    public long getSuccessfulScans() {
+        return successfulScans.get();
+    }
+
+    public int getScansToday() {
+        return getDailyScans(1)[0];
+    }
+
+    /**
+     * Successful scans as a percentage of all scans, or -1 before the first scan.
+     */
+    public int getAccuracyPercent() {
+        long total = totalScans.get();
+        return total > 0 ? (int) (successfulScans.get() * 100 / total) : -1;
+    }
+
+    /**
+     * Scan counts for the last {@code days} days (at most DAYS), oldest first.
+     */
+    public int[] getDailyScans(int days) {
+        days = Math.min(days, DAYS);
+        int[] counts = new int[days];
+        long today = today();
+        for (int i = 0; i < days; i++) {
+            long day = today - (days - 1 - i);
+            long bucket = buckets.get((int) (day % DAYS));
+            counts[i] = dayOf(bucket) == day ? (int) scansOf(bucket) : 0;
+        }
+        return counts;
+    }
+
+    /**
+     * Writes the counters now. Also runs on its own shortly after each change.
+     */
+    public synchronized void flush() {
+        flushScheduled.set(false);
+        try {
+            JSONObject json = new JSONObject();
+            json.put("total", totalScans.get());
+            json.put("successful", successfulScans.get());
+            JSONArray days = new JSONArray();
+            for (int i = 0; i < DAYS; i++) {
+                long bucket = buckets.get(i);
+                if (bucket == 0) continue;
+                days.put(new JSONArray().put(dayOf(bucket)).put(scansOf(bucket)).put(successesOf(bucket)));
+            }
+            json.put("days", days);
+            write(json.toString().getBytes(UTF_8));
+        } catch (JSONException | IOException e) {
+            Log.w(TAG, "Failed to save scan stats", e);
+        }
+    }
+
+    private void write(byte[] data) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            out.write(data);
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    private void load(SharedPreferences legacy) {
+        if (!file.exists()) {
+            // Carry over the totals the old prefs-based counters kept
+            totalScans.set(legacy.getInt("total_scans", 0));
+            successfulScans.set(legacy.getInt("successful_scans", 0));
+            return;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] data = new byte[(int) file.length()];
+            int read = 0;
+            while (read < data.length) {
+                int n = in.read(data, read, data.length - read);
+                if (n < 0) break;
+                read += n;
+            }
+            JSONObject json = new JSONObject(new String(data, 0, read, UTF_8));
+            totalScans.set(json.optLong("total"));
+            successfulScans.set(json.optLong("successful"));
+            JSONArray days = json.optJSONArray("days");
+            for (int i = 0; days != null && i < days.length(); i++) {
+                JSONArray day = days.getJSONArray(i);
+                long bucket = pack(day.getLong(0), day.getLong(1), day.getLong(2));
+                buckets.set((int) (day.getLong(0) % DAYS), bucket);
+            }
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Failed to load scan stats", e);
+        }
+    }
+
+    private static long today() {
+        long now = System.currentTimeMillis();
+        return (now + TimeZone.getDefault().getOffset(now)) / DAY_MS;
+    }
+
+    private static long pack(long day, long scans, long successes) {
+        return day << (2 * COUNT_BITS) | (scans & COUNT_MASK) << COUNT_BITS | (successes & COUNT_MASK);
+    }
+
+    private static long dayOf(long bucket) {
+        return bucket >>> (2 * COUNT_BITS);
+    }
+
+    private static long scansOf(long bucket) {
+        return (bucket >>> COUNT_BITS) & COUNT_MASK;
+    }
+
+    private static long successesOf(long bucket) {
+        return bucket & COUNT_MASK;
+    }
+}
@@ -2,16 +2,21 @@ package com.example.aiprescriptionreader;
 
 import android.Manifest;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.widget.Button;
+import android.widget.TextView;
 import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.camera.core.Camera;
 import androidx.camera.core.CameraSelector;
+import androidx.camera.core.ImageAnalysis;
 import androidx.camera.core.ImageCapture;
 import androidx.camera.core.ImageCaptureException;
+import androidx.camera.core.ImageProxy;
 import androidx.camera.core.Preview;
 import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.camera.view.PreviewView;
@@ -19,17 +24,20 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import com.google.common.util.concurrent.ListenableFuture;
 import java.io.File;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 public class ScannerActivity extends AppCompatActivity {
 
     private static final int CAMERA_PERMISSION = 100;
+    // Set to false to go back to writing the JPEG before recognition starts
+    static final String PREF_CAPTURE_IN_MEMORY = "capture_in_memory";
+    static final String PREF_LIVE_MODE = "live_mode";
     private PreviewView previewView;
-    private Button btnFlash, btnCapture, btnSwitch;
+    private Button btnFlash, btnCapture, btnSwitch, btnAuto;
+    private TextView tvHint;
 
     private ImageCapture imageCapture;
     private Camera camera;
@@ -37,28 +45,65 @@ public class ScannerActivity extends AppCompatActivity {
     private int cameraFacing = CameraSelector.LENS_FACING_BACK;
 
     private ExecutorService cameraExecutor;
+    private SharedPreferences prefs;
+    private RecognitionService recognitionService;
+    private ImageStore imageStore;
+    private LiveTextAnalyzer liveAnalyzer;
+    private boolean liveMode;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_scanner);
 
+        prefs = getSharedPreferences("PrescriptionPrefs", MODE_PRIVATE);
+        liveMode = prefs.getBoolean(PREF_LIVE_MODE, false);
+
         previewView = findViewById(R.id.previewView);
+        tvHint = findViewById(R.id.tvHint);
         btnFlash = findViewById(R.id.btnFlash);
         btnCapture = findViewById(R.id.btnCapture);
         btnSwitch = findViewById(R.id.btnSwitch);
+        btnAuto = findViewById(R.id.btnAuto);
 
         btnFlash.setOnClickListener(v -> toggleFlash());
         btnCapture.setOnClickListener(v -> captureImage());
         btnSwitch.setOnClickListener(v -> switchCamera());
+        btnAuto.setOnClickListener(v -> toggleLiveMode());
+        updateAutoButton();
+
+        cameraExecutor = Executors.newSingleThreadExecutor();
+        recognitionService = RecognitionService.getInstance();
+        imageStore = ImageStore.getInstance(this);
+        recognitionService.acquire();
+        liveAnalyzer = new LiveTextAnalyzer(recognitionService, new LiveTextAnalyzer.Listener() {
+            @Override
+            public void onFrameText(String text, int stableFrames, long latencyMs) {
+                tvHint.setText(text.isEmpty() ? "Position prescription within frame"
+                        : "Reading... hold steady (" + stableFrames + ")");
+            }
+
+            @Override
+            public void onStable(String text) {
+                // One automatic capture per visit; onResume re-arms it
+                liveAnalyzer.setEnabled(false);
+                tvHint.setText("Capturing...");
+                captureImage();
+            }
+        });
 
         if (checkPermission()) {
             startCamera();
         } else {
             requestPermission();
         }
+    }
 
-        cameraExecutor = Executors.newSingleThreadExecutor();
+    @Override
+    protected void onResume() {
+        super.onResume();
+        liveAnalyzer.reset();
+        liveAnalyzer.setEnabled(liveMode);
     }
 
     private boolean checkPermission() {
@@ -105,8 +150,18 @@ public class ScannerActivity extends AppCompatActivity {
 
                 cameraProvider.unbindAll();
 
-                camera = cameraProvider.bindToLifecycle(
-                        this, cameraSelector, preview, imageCapture);
+                if (liveMode) {
+                    ImageAnalysis imageAnalysis = new ImageAnalysis.Builder()
+                            .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                            .build();
+                    imageAnalysis.setAnalyzer(cameraExecutor, liveAnalyzer);
+
+                    camera = cameraProvider.bindToLifecycle(
+                            this, cameraSelector, preview, imageCapture, imageAnalysis);
+                } else {
+                    camera = cameraProvider.bindToLifecycle(
+                            this, cameraSelector, preview, imageCapture);
+                }
 
             } catch (Exception e) {
                 e.printStackTrace();
@@ -127,6 +182,20 @@ public class ScannerActivity extends AppCompatActivity {
         }
     }
 
+    private void toggleLiveMode() {
+        liveMode = !liveMode;
+        prefs.edit().putBoolean(PREF_LIVE_MODE, liveMode).apply();
+        liveAnalyzer.reset();
+        liveAnalyzer.setEnabled(liveMode);
+        tvHint.setText("Position prescription within frame");
+        updateAutoButton();
+        if (checkPermission()) startCamera();
+    }
+
+    private void updateAutoButton() {
+        btnAuto.setText(liveMode ? "AUTO" : "MANUAL");
+    }
+
     private void switchCamera() {
         cameraFacing = (cameraFacing == CameraSelector.LENS_FACING_BACK) ?
                 CameraSelector.LENS_FACING_FRONT : CameraSelector.LENS_FACING_BACK;
@@ -136,7 +205,70 @@ public class ScannerActivity extends AppCompatActivity {
     private void captureImage() {
         if (imageCapture == null) return;
 
-        File photoFile = createImageFile();
+        long startedAt = SystemClock.elapsedRealtime();
+        if (prefs.getBoolean(PREF_CAPTURE_IN_MEMORY, true)) {
+            captureToMemory(startedAt);
+        } else {
+            captureToFile(startedAt);
+        }
+    }
+
+    /**
+     * Keeps the JPEG in memory and opens the result screen straight away; the file is
+     * written in the background.
+     */
+    private void captureToMemory(long startedAt) {
+        imageCapture.takePicture(cameraExecutor, new ImageCapture.OnImageCapturedCallback() {
+            @Override
+            public void onCaptureSuccess(@NonNull ImageProxy image) {
+                byte[] jpeg;
+                int rotation = image.getImageInfo().getRotationDegrees();
+                try {
+                    ByteBuffer buffer = image.getPlanes()[0].getBuffer();
+                    jpeg = new byte[buffer.remaining()];
+                    buffer.get(jpeg);
+                } finally {
+                    image.close();
+                }
+
+                File photoFile;
+                try {
+                    photoFile = imageStore.newImageFile();
+                } catch (IOException e) {
+                    runOnUiThread(() ->
+                            Toast.makeText(ScannerActivity.this, "Capture failed", Toast.LENGTH_SHORT).show());
+                    return;
+                }
+                CaptureStore.Capture capture = CaptureStore.put(jpeg, rotation, startedAt);
+                CaptureStore.persistAsync(capture, photoFile, () -> imageStore.onImageSaved(photoFile));
+
+                runOnUiThread(() -> {
+                    Toast.makeText(ScannerActivity.this, "Image captured", Toast.LENGTH_SHORT).show();
+
+                    Intent intent = new Intent(ScannerActivity.this, ResultActivity.class);
+                    intent.putExtra("capture_id", capture.id);
+                    // Fallback if the process dies and the in-memory copy is gone
+                    intent.putExtra("image_path", photoFile.getAbsolutePath());
+                    startActivity(intent);
+                });
+            }
+
+            @Override
+            public void onError(@NonNull ImageCaptureException exception) {
+                runOnUiThread(() ->
+                        Toast.makeText(ScannerActivity.this, "Capture failed", Toast.LENGTH_SHORT).show());
+            }
+        });
+    }
+
+    private void captureToFile(long startedAt) {
+        File photoFile;
+        try {
+            photoFile = imageStore.newImageFile();
+        } catch (IOException e) {
+            Toast.makeText(this, "Capture failed", Toast.LENGTH_SHORT).show();
+            return;
+        }
         ImageCapture.OutputFileOptions outputOptions =
                 new ImageCapture.OutputFileOptions.Builder(photoFile).build();
 
@@ -146,33 +278,31 @@ public class ScannerActivity extends AppCompatActivity {
                     @Override
                     public void onImageSaved(@NonNull ImageCapture.OutputFileResults outputFileResults) {
                         String path = photoFile.getAbsolutePath();
+                        imageStore.onImageSaved(photoFile);
                         Toast.makeText(ScannerActivity.this, "Image captured", Toast.LENGTH_SHORT).show();
 
                         Intent intent = new Intent(ScannerActivity.this, ResultActivity.class);
                         intent.putExtra("image_path", path);
+                        intent.putExtra("capture_started_at", startedAt);
                         startActivity(intent);
                     }
 
                     @Override
                     public void onError(@NonNull ImageCaptureException exception) {
+                        photoFile.delete();
                         Toast.makeText(ScannerActivity.this, "Capture failed", Toast.LENGTH_SHORT).show();
                     }
                 });
     }
 
-    private File createImageFile() {
-        String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-        String fileName = "PRESCRIPTION_" + timeStamp;
-        File storageDir = getExternalFilesDir("Prescriptions");
-        if (!storageDir.exists()) storageDir.mkdirs();
-        return new File(storageDir, fileName + ".jpg");
-    }
-
     @Override
     protected void onDestroy() {
         super.onDestroy();
         if (cameraExecutor != null) {
             cameraExecutor.shutdown();
         }
+        if (recognitionService != null) {
+            recognitionService.release();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,74 @@
+package com.example.aiprescriptionreader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Preprocessing of a synthetic 2048px page with skewed text lines, single-threaded
+ * and striped across cores.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ImagePreprocessorBenchmark {
+
+    private static final int WIDTH = 1536, HEIGHT = 2048;
+
+    @Param({"1", "4"})
+    public int stripes;
+
+    @Param({"0", "90"})
+    public int rotation;
+
+    private int[] pixels;
+    private ExecutorService executor;
+    private ImagePreprocessor preprocessor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pixels = new int[WIDTH * HEIGHT];
+        Arrays.fill(pixels, 0xffd0d0d0);
+        double slope = Math.tan(Math.toRadians(3));
+        for (int line = 0; line < 40; line++) {
+            int top = 80 + line * 48;
+            for (int x = 100; x < WIDTH - 100; x++) {
+                // Word gaps every few characters
+                if ((x / 14) % 4 == 3) continue;
+                for (int k = 0; k < 12; k++) {
+                    int y = (int) (top + x * slope) + k;
+                    if (y < HEIGHT) pixels[y * WIDTH + x] = 0xff1a1a1a;
+                }
+            }
+        }
+        executor = stripes > 1 ? Executors.newFixedThreadPool(stripes - 1) : null;
+        preprocessor = new ImagePreprocessor(executor, stripes);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (executor != null) executor.shutdown();
+    }
+
+    @Benchmark
+    public ImagePreprocessor.Result binary() {
+        return preprocessor.process(pixels, WIDTH, HEIGHT, rotation, ImagePreprocessor.Mode.BINARY);
+    }
+
+    @Benchmark
+    public ImagePreprocessor.Result gray() {
+        return preprocessor.process(pixels, WIDTH, HEIGHT, rotation, ImagePreprocessor.Mode.GRAY);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.aiprescriptionreader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the analysis path over a seeded synthetic corpus. Run with
+ * ./gradlew :benchmark:jmh; the gc profiler adds B/op and allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MedicineAnalyzerBenchmark {
+
+    private static final int CORPUS_SIZE = 64;
+
+    // 1 line, a short prescription, a discharge sheet, a multi-page sheet
+    @Param({"1", "12", "80", "400"})
+    public int lines;
+
+    @Param({"0.0", "0.02"})
+    public double noise;
+
+    private String[] corpus;
+    private String[][] corpusLines;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        corpus = new PrescriptionCorpus(42L, noise).prescriptions(CORPUS_SIZE, lines);
+        corpusLines = new String[CORPUS_SIZE][];
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            corpusLines[i] = corpus[i].split("\n");
+        }
+    }
+
+    private int nextIndex() {
+        int i = next;
+        next = (i + 1) % CORPUS_SIZE;
+        return i;
+    }
+
+    @Benchmark
+    public String analyzePrescription() {
+        return MedicineAnalyzer.analyzePrescription(corpus[nextIndex()]);
+    }
+
+    @Benchmark
+    public PrescriptionAnalysis analyze() {
+        return MedicineAnalyzer.analyze(corpus[nextIndex()]);
+    }
+
+    @Benchmark
+    public List<Medicine> findMedicines() {
+        return MedicineAnalyzer.findMedicines(corpus[nextIndex()]);
+    }
+
+    /**
+     * Dosage, frequency and duration extraction: one lexer pass per line.
+     */
+    @Benchmark
+    public void tokenizeLines(Blackhole bh) {
+        String[] text = corpusLines[nextIndex()];
+        PrescriptionLexer lexer = new PrescriptionLexer("");
+        List<DrugMatcher.Match> noDrugs = Collections.emptyList();
+        for (String line : text) {
+            lexer.reset(line);
+            bh.consume(lexer.tokenize(0, line.length(), noDrugs));
+        }
+    }
+
+    /**
+     * Dosage-form classification behind the summary section.
+     */
+    @Benchmark
+    public Set<DosageForm> dosageForms() {
+        Set<DosageForm> forms = EnumSet.noneOf(DosageForm.class);
+        MedicineAnalyzer.findDosageForms(corpus[nextIndex()].toLowerCase(Locale.ROOT), forms);
+        return forms;
+    }
+
+    @Benchmark
+    public String renderSummary() {
+        return AnalysisRenderer.renderSummary(MedicineAnalyzer.analyze(corpus[nextIndex()]));
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.aiprescriptionreader;
+
+import java.util.Random;
+
+/**
+ * Seeded generator of synthetic prescriptions with OCR-style noise. The same seed
+ * and parameters always produce the same text, so results compare across commits.
+ */
+public class PrescriptionCorpus {
+
+    private static final String[] DRUGS = {
+            "Paracetamol", "Ibuprofen", "Aspirin", "Amoxicillin", "Azithromycin", "Metformin",
+            "Insulin", "Atorvastatin", "Losartan", "Amlodipine", "Omeprazole", "Levothyroxine"
+    };
+    private static final String[] FORMS = {"Tab", "Tab.", "Cap", "Syrup", "Inj", "Tablet", ""};
+    private static final String[] STRENGTHS = {"500mg", "250 mg", "10mg", "5 mg", "1 g", "5 ml", "40mg", "100 mcg"};
+    private static final String[] FREQUENCIES = {
+            "once daily", "twice daily", "3 times a day", "1-0-1", "1-1-1", "0-0-1", "BD", "TDS", "every 8 hours", ""
+    };
+    private static final String[] DURATIONS = {"for 5 days", "x 7 days", "for 2 weeks", "10 days course", "x 30 days", ""};
+    private static final String[] FILLER = {
+            "Dr. A. Rahman MBBS, FCPS (Medicine)",
+            "Patient: Karim Uddin   Age: 54   Sex: M",
+            "Date: 12/03/2025",
+            "C/C: fever, cough for 3 days",
+            "O/E: BP 130/85 mmHg, Pulse 88/min",
+            "Adv: plenty of fluids, rest",
+            "Follow up after 2 weeks",
+            "Inv: CBC, RBS, S. creatinine",
+            "Signature ____________"
+    };
+    private static final int LINES_PER_PAGE = 40;
+
+    private final Random random;
+    private final double noise;
+
+    /**
+     * @param noise probability in [0, 1] that any given character is corrupted
+     */
+    public PrescriptionCorpus(long seed, double noise) {
+        this.random = new Random(seed);
+        this.noise = noise;
+    }
+
+    /**
+     * One prescription of the given number of lines. Roughly two thirds of the lines
+     * are medicine orders, the rest headers and notes; a page break every 40 lines.
+     */
+    public String prescription(int lines) {
+        StringBuilder sb = new StringBuilder(lines * 48);
+        for (int i = 0; i < lines; i++) {
+            if (i > 0) sb.append('\n');
+            if (i > 0 && i % LINES_PER_PAGE == 0) {
+                sb.append("--- page ").append(i / LINES_PER_PAGE + 1).append(" ---\n");
+            }
+            String line = random.nextInt(3) == 0 ? pick(FILLER) : medicineLine();
+            sb.append(corrupt(line));
+        }
+        return sb.toString();
+    }
+
+    public String[] prescriptions(int count, int lines) {
+        String[] out = new String[count];
+        for (int i = 0; i < count; i++) {
+            out[i] = prescription(lines);
+        }
+        return out;
+    }
+
+    private String medicineLine() {
+        StringBuilder sb = new StringBuilder();
+        String form = pick(FORMS);
+        if (!form.isEmpty()) sb.append(form).append(' ');
+        sb.append(pick(DRUGS)).append(' ').append(pick(STRENGTHS));
+        appendIfPresent(sb, pick(FREQUENCIES));
+        appendIfPresent(sb, pick(DURATIONS));
+        return sb.toString();
+    }
+
+    private static void appendIfPresent(StringBuilder sb, String part) {
+        if (!part.isEmpty()) sb.append(' ').append(part);
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    /**
+     * Typical ML Kit mistakes: look-alike swaps, dropped letters and split words.
+     */
+    private String corrupt(String line) {
+        if (noise <= 0) return line;
+        StringBuilder sb = new StringBuilder(line.length() + 4);
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (random.nextDouble() >= noise) {
+                sb.append(c);
+                continue;
+            }
+            switch (random.nextInt(4)) {
+                case 0:
+                    sb.append(lookAlike(c));
+                    break;
+                case 1:
+                    // dropped character
+                    break;
+                case 2:
+                    sb.append(c).append(' ');
+                    break;
+                default:
+                    sb.append(Character.isUpperCase(c) ? Character.toLowerCase(c) : Character.toUpperCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static char lookAlike(char c) {
+        switch (c) {
+            case 'o': return '0';
+            case 'O': return '0';
+            case 'l': return '1';
+            case 'i': return 'l';
+            case 's': return '5';
+            case 'B': return '8';
+            case 'm': return 'n';
+            case 'c': return 'e';
+            default: return c;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.aiprescriptionreader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recognition plus analysis with the fake engine standing in for ML Kit, so the
+ * pipeline's own overhead (engine chain, layout rows, analysis) is measured without
+ * a device. Half the recorded pages are low-confidence, which makes the chain
+ * escalate to the second engine for them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RecognitionPipelineBenchmark {
+
+    private static final int PAGES = 64;
+
+    @Param({"12", "80"})
+    public int lines;
+
+    private EngineChain chain;
+    private RecognitionEngine.Page[] pages;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] corpus = new PrescriptionCorpus(42L, 0.02).prescriptions(PAGES, lines);
+        FakeRecognitionEngine fast = new FakeRecognitionEngine("fast");
+        FakeRecognitionEngine full = new FakeRecognitionEngine("full");
+        pages = new RecognitionEngine.Page[PAGES];
+        for (int i = 0; i < PAGES; i++) {
+            String key = "page-" + i;
+            fast.recordText(key, corpus[i], i % 2 == 0 ? 0.9f : 0.5f);
+            full.recordText(key, corpus[i], 0.9f);
+            pages[i] = new FixedPage(key);
+        }
+        chain = new EngineChain.Builder().add(fast, 1).add(full, 1).build();
+    }
+
+    @Benchmark
+    public PrescriptionAnalysis recognizeAndAnalyze() throws Exception {
+        RecognitionEngine.Page page = pages[next];
+        next = (next + 1) % PAGES;
+        return MedicineAnalyzer.analyze(chain.recognize(page, 1000).text);
+    }
+
+    private static class FixedPage implements RecognitionEngine.Page {
+        private final String key;
+
+        FixedPage(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public int width() {
+            return 1240;
+        }
+
+        @Override
+        public int height() {
+            return 1754;
+        }
+
+        @Override
+        public int rotationDegrees() {
+            return 0;
+        }
+
+        @Override
+        public String key() {
+            return key;
+        }
+    }
+}
@@ -21,4 +21,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "aiprescriptionreader"
 include(":app")
+include(":analysis")
+include(":benchmark")
  
\ No newline at end of file